@@ -1,13 +1,16 @@
 package com.enctool.app;
 
 import com.enctool.app.asymmetric.KeyUtils;
+import com.enctool.app.asymmetric.RSAEnvelope;
 import com.enctool.app.asymmetric.RSAUtils;
+import com.enctool.app.util.CodecUtils;
+import com.enctool.app.util.ProgressTracker;
 import javax.swing.*;
 import java.awt.*;
 import java.io.*;
-import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
 import java.security.*;
-import java.util.Base64;
 
 public class AsymmetricEncryptionPanel extends JPanel {
     private JComboBox<String> algorithmComboBox;
@@ -37,6 +40,7 @@ public class AsymmetricEncryptionPanel extends JPanel {
     private JPanel filePanel;
     private CardLayout cardLayout;
     private JPanel cardPanel;
+    private ProgressPanel progressPanel;
     
     // Constants for CardLayout
     private static final String TEXT_MODE = "TEXT_MODE";
@@ -201,9 +205,19 @@ public class AsymmetricEncryptionPanel extends JPanel {
         add(controlPanel, BorderLayout.NORTH);
         add(new JScrollPane(mainContentPanel), BorderLayout.CENTER);
         
+        // Progress of the operation running in the background
+        progressPanel = new ProgressPanel();
+        add(progressPanel, BorderLayout.SOUTH);
+        
         // Add event listeners for mode selection
-        textModeRadio.addActionListener(e -> cardLayout.show(cardPanel, TEXT_MODE));
-        fileModeRadio.addActionListener(e -> cardLayout.show(cardPanel, FILE_MODE));
+        textModeRadio.addActionListener(e -> {
+            cardLayout.show(cardPanel, TEXT_MODE);
+            updateButtonLabels();
+        });
+        fileModeRadio.addActionListener(e -> {
+            cardLayout.show(cardPanel, FILE_MODE);
+            updateButtonLabels();
+        });
         
         // File selection listeners
         selectInputFileButton.addActionListener(e -> {
@@ -235,107 +249,118 @@ public class AsymmetricEncryptionPanel extends JPanel {
 
         // Add action listeners
         generateKeyPairButton.addActionListener(e -> {
-            try {
-                String algorithm = (String) algorithmComboBox.getSelectedItem();
-                int keySize = (Integer) keySizeComboBox.getSelectedItem();
-                KeyPair keyPair = generateKeyPair(algorithm, keySize);
-
-                // Display keys in Base64 format
-                publicKeyTextArea.setText(Base64.getEncoder().encodeToString(keyPair.getPublic().getEncoded()));
-                privateKeyTextArea.setText(Base64.getEncoder().encodeToString(keyPair.getPrivate().getEncoded()));
-
-            } catch (Exception ex) {
-                JOptionPane.showMessageDialog(this, 
+            String algorithm = (String) algorithmComboBox.getSelectedItem();
+            int keySize = (Integer) keySizeComboBox.getSelectedItem();
+            // Large RSA keys take seconds to find, so they are generated in the background
+            progressPanel.run(0, progress -> generateKeyPair(algorithm, keySize),
+                keyPair -> {
+                    // Display keys in Base64 format
+                    publicKeyTextArea.setText(CodecUtils.toBase64(keyPair.getPublic().getEncoded()));
+                    privateKeyTextArea.setText(CodecUtils.toBase64(keyPair.getPrivate().getEncoded()));
+                },
+                ex -> JOptionPane.showMessageDialog(this, 
                     "Error generating key pair: " + ex.getMessage(), 
-                    "Error", JOptionPane.ERROR_MESSAGE);
-            }
+                    "Error", JOptionPane.ERROR_MESSAGE),
+                getActionControls());
         });
 
         encryptPrivateButton.addActionListener(e -> {
-            try {
-                String privateKeyString = privateKeyTextArea.getText();
-                String algorithm = (String) algorithmComboBox.getSelectedItem();
+            String privateKeyString = privateKeyTextArea.getText();
+            String publicKeyString = publicKeyTextArea.getText();
+            String algorithm = (String) algorithmComboBox.getSelectedItem();
 
-                if (privateKeyString.isEmpty()) {
-                    JOptionPane.showMessageDialog(this, 
-                        "Please generate or enter a private key first", 
-                        "Warning", JOptionPane.WARNING_MESSAGE);
-                    return;
-                }
+            // Files are encrypted for the private key holder, text with the private key
+            String keyString = textModeRadio.isSelected() ? privateKeyString : publicKeyString;
+            if (keyString.isEmpty()) {
+                JOptionPane.showMessageDialog(this, 
+                    textModeRadio.isSelected() ? "Please generate or enter a private key first"
+                        : "Please generate or enter a public key first", 
+                    "Warning", JOptionPane.WARNING_MESSAGE);
+                return;
+            }
 
-                if (textModeRadio.isSelected()) {
-                    // Text mode encryption
-                    String input = inputTextArea.getText();
-                    String encrypted = encryptWithPrivateKey(input, privateKeyString, algorithm);
-                    outputTextArea.setText(encrypted);
-                } else {
-                    // File mode encryption
-                    String inputFilePath = inputFileTextField.getText();
-                    String outputFilePath = outputFileTextField.getText();
-                    
-                    if (inputFilePath.isEmpty() || outputFilePath.isEmpty()) {
-                        JOptionPane.showMessageDialog(this,
-                            "Please select both input and output files",
-                            "Warning", JOptionPane.WARNING_MESSAGE);
-                        return;
-                    }
-                    
-                    encryptFileWithPrivateKey(inputFilePath, outputFilePath, privateKeyString, algorithm);
+            if (textModeRadio.isSelected()) {
+                // Text mode encryption
+                String input = inputTextArea.getText();
+                progressPanel.run(0, progress -> encryptWithPrivateKey(input, privateKeyString, algorithm),
+                    encrypted -> outputTextArea.setText(encrypted),
+                    ex -> outputTextArea.setText("Encryption error: " + ex.getMessage()),
+                    getActionControls());
+            } else {
+                // File mode encryption
+                String inputFilePath = inputFileTextField.getText();
+                String outputFilePath = outputFileTextField.getText();
+                
+                if (inputFilePath.isEmpty() || outputFilePath.isEmpty()) {
                     JOptionPane.showMessageDialog(this,
-                        "File encrypted successfully with private key",
-                        "Success", JOptionPane.INFORMATION_MESSAGE);
-                }
-            } catch (Exception ex) {
-                String errorMsg = "Encryption error: " + ex.getMessage();
-                if (textModeRadio.isSelected()) {
-                    outputTextArea.setText(errorMsg);
-                } else {
-                    JOptionPane.showMessageDialog(this, errorMsg, "Error", JOptionPane.ERROR_MESSAGE);
+                        "Please select both input and output files",
+                        "Warning", JOptionPane.WARNING_MESSAGE);
+                    return;
                 }
+                
+                Path output = Paths.get(outputFilePath);
+                progressPanel.run(new File(inputFilePath).length(),
+                    ProgressPanel.deletingOutputOnCancel(output, progress -> {
+                        encryptFileWithPublicKey(inputFilePath, outputFilePath, publicKeyString, algorithm,
+                            progress);
+                        return null;
+                    }),
+                    result -> JOptionPane.showMessageDialog(this,
+                        "File encrypted successfully with public key",
+                        "Success", JOptionPane.INFORMATION_MESSAGE),
+                    ex -> JOptionPane.showMessageDialog(this, "Encryption error: " + ex.getMessage(),
+                        "Error", JOptionPane.ERROR_MESSAGE),
+                    getActionControls());
             }
         });
 
         decryptPublicButton.addActionListener(e -> {
-            try {
-                String publicKeyString = publicKeyTextArea.getText();
-                String algorithm = (String) algorithmComboBox.getSelectedItem();
+            String publicKeyString = publicKeyTextArea.getText();
+            String privateKeyString = privateKeyTextArea.getText();
+            String algorithm = (String) algorithmComboBox.getSelectedItem();
 
-                if (publicKeyString.isEmpty()) {
-                    JOptionPane.showMessageDialog(this, 
-                        "Please generate or enter a public key first", 
-                        "Warning", JOptionPane.WARNING_MESSAGE);
-                    return;
-                }
+            // Files are decrypted with the private key, text with the public key
+            String keyString = textModeRadio.isSelected() ? publicKeyString : privateKeyString;
+            if (keyString.isEmpty()) {
+                JOptionPane.showMessageDialog(this, 
+                    textModeRadio.isSelected() ? "Please generate or enter a public key first"
+                        : "Please generate or enter a private key first", 
+                    "Warning", JOptionPane.WARNING_MESSAGE);
+                return;
+            }
 
-                if (textModeRadio.isSelected()) {
-                    // Text mode decryption
-                    String input = inputTextArea.getText();
-                    String decrypted = decryptWithPublicKey(input, publicKeyString, algorithm);
-                    outputTextArea.setText(decrypted);
-                } else {
-                    // File mode decryption
-                    String inputFilePath = inputFileTextField.getText();
-                    String outputFilePath = outputFileTextField.getText();
-                    
-                    if (inputFilePath.isEmpty() || outputFilePath.isEmpty()) {
-                        JOptionPane.showMessageDialog(this,
-                            "Please select both input and output files",
-                            "Warning", JOptionPane.WARNING_MESSAGE);
-                        return;
-                    }
-                    
-                    decryptFileWithPublicKey(inputFilePath, outputFilePath, publicKeyString, algorithm);
+            if (textModeRadio.isSelected()) {
+                // Text mode decryption
+                String input = inputTextArea.getText();
+                progressPanel.run(0, progress -> decryptWithPublicKey(input, publicKeyString, algorithm),
+                    decrypted -> outputTextArea.setText(decrypted),
+                    ex -> outputTextArea.setText("Decryption error: " + ex.getMessage()),
+                    getActionControls());
+            } else {
+                // File mode decryption
+                String inputFilePath = inputFileTextField.getText();
+                String outputFilePath = outputFileTextField.getText();
+                
+                if (inputFilePath.isEmpty() || outputFilePath.isEmpty()) {
                     JOptionPane.showMessageDialog(this,
-                        "File decrypted successfully with public key",
-                        "Success", JOptionPane.INFORMATION_MESSAGE);
-                }
-            } catch (Exception ex) {
-                String errorMsg = "Decryption error: " + ex.getMessage();
-                if (textModeRadio.isSelected()) {
-                    outputTextArea.setText(errorMsg);
-                } else {
-                    JOptionPane.showMessageDialog(this, errorMsg, "Error", JOptionPane.ERROR_MESSAGE);
+                        "Please select both input and output files",
+                        "Warning", JOptionPane.WARNING_MESSAGE);
+                    return;
                 }
+                
+                Path output = Paths.get(outputFilePath);
+                progressPanel.run(new File(inputFilePath).length(),
+                    ProgressPanel.deletingOutputOnCancel(output, progress -> {
+                        decryptFileWithPrivateKey(inputFilePath, outputFilePath, privateKeyString, algorithm,
+                            progress);
+                        return null;
+                    }),
+                    result -> JOptionPane.showMessageDialog(this,
+                        "File decrypted successfully with private key",
+                        "Success", JOptionPane.INFORMATION_MESSAGE),
+                    ex -> JOptionPane.showMessageDialog(this, "Decryption error: " + ex.getMessage(),
+                        "Error", JOptionPane.ERROR_MESSAGE),
+                    getActionControls());
             }
         });
 
@@ -401,52 +426,45 @@ public class AsymmetricEncryptionPanel extends JPanel {
     }
     
     /**
-     * Encrypts a file using the private key
+     * Controls disabled while an operation runs
      */
-    private void encryptFileWithPrivateKey(String inputFilePath, String outputFilePath,
-                                         String privateKeyString, String algorithm)
-                                         throws IOException {
-        try {
-            // Read the file content
-            byte[] fileContent = Files.readAllBytes(new File(inputFilePath).toPath());
-            
-            // Convert to Base64 to handle binary data
-            String base64Content = Base64.getEncoder().encodeToString(fileContent);
-            
-            // Encrypt the content
-            String encryptedContent = encryptWithPrivateKey(base64Content, privateKeyString, algorithm);
-            
-            // Write the encrypted content to the output file
-            try (FileWriter writer = new FileWriter(outputFilePath)) {
-                writer.write(encryptedContent);
-            }
-        } catch (Exception e) {
-            throw new IOException("Error encrypting file: " + e.getMessage(), e);
-        }
+    private Component[] getActionControls() {
+        return new Component[]{generateKeyPairButton, encryptPrivateButton, decryptPublicButton,
+            selectInputFileButton, selectOutputFileButton};
     }
     
     /**
-     * Decrypts a file using the public key
+     * Updates the button labels to the key each mode uses
      */
-    private void decryptFileWithPublicKey(String inputFilePath, String outputFilePath,
-                                        String publicKeyString, String algorithm)
-                                        throws IOException {
-        try {
-            // Read the encrypted file content
-            String encryptedContent = new String(Files.readAllBytes(new File(inputFilePath).toPath()));
-            
-            // Decrypt the content
-            String decryptedBase64 = decryptWithPublicKey(encryptedContent, publicKeyString, algorithm);
-            
-            // Decode Base64 back to binary
-            byte[] decryptedBytes = Base64.getDecoder().decode(decryptedBase64);
-            
-            // Write to output file
-            try (FileOutputStream fos = new FileOutputStream(outputFilePath)) {
-                fos.write(decryptedBytes);
-            }
-        } catch (Exception e) {
-            throw new IOException("Error decrypting file: " + e.getMessage(), e);
+    private void updateButtonLabels() {
+        if (textModeRadio.isSelected()) {
+            encryptPrivateButton.setText("Encrypt with Private Key");
+            decryptPublicButton.setText("Decrypt with Public Key");
+        } else {
+            encryptPrivateButton.setText("Encrypt with Public Key");
+            decryptPublicButton.setText("Decrypt with Private Key");
         }
     }
+    
+    /**
+     * Encrypts a file using the public key.
+     * RSA can only encrypt a few hundred bytes, so the file is encrypted with a
+     * random AES session key and only that key is encrypted with RSA.
+     */
+    private void encryptFileWithPublicKey(String inputFilePath, String outputFilePath,
+                                          String publicKeyString, String algorithm, ProgressTracker progress)
+                                          throws IOException {
+        // Only RSA is supported in the current implementation
+        RSAEnvelope.encrypt(Paths.get(inputFilePath), Paths.get(outputFilePath), publicKeyString, progress);
+    }
+    
+    /**
+     * Decrypts a file using the private key
+     */
+    private void decryptFileWithPrivateKey(String inputFilePath, String outputFilePath,
+                                           String privateKeyString, String algorithm, ProgressTracker progress)
+                                           throws IOException {
+        // Only RSA is supported in the current implementation
+        RSAEnvelope.decrypt(Paths.get(inputFilePath), Paths.get(outputFilePath), privateKeyString, progress);
+    }
 }
@@ -0,0 +1,89 @@
+package com.enctool.app;
+
+import com.enctool.app.algorithm.AESAlgorithm;
+import com.enctool.app.algorithm.TwofishAlgorithm;
+import com.enctool.app.asymmetric.RSAUtils;
+import com.enctool.app.cli.EncToolCli;
+import com.enctool.app.util.BouncyCastleSupport;
+import com.enctool.app.util.CodecUtils;
+
+import javax.swing.*;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.security.KeyPair;
+import java.util.Comparator;
+import java.util.stream.Stream;
+
+/**
+ * Workload for the class-data-sharing archive built by the "cds" profile in
+ * pom.xml. The JVM records every class this run loads and stores them
+ * pre-parsed and pre-verified in the archive, so a later start with the
+ * archive skips that work. The run builds every panel and does the first
+ * operation of each kind through the command line, which covers the classes
+ * of the first frame and of the first encryption, Bouncy Castle included.
+ * <p>
+ * It runs headless so it also works on build machines without a display; the
+ * window classes that only a real frame loads are not archived.
+ */
+public final class CdsTraining {
+
+    private CdsTraining() {
+    }
+
+    public static void main(String[] args) throws Exception {
+        UIManager.setLookAndFeel(UIManager.getSystemLookAndFeelClassName());
+        SwingUtilities.invokeAndWait(() -> {
+            JTabbedPane tabbedPane = new JTabbedPane();
+            tabbedPane.addTab("Traditional", new TraditionalEncryptionPanel());
+            tabbedPane.addTab("Symmetric", new SymmetricEncryptionPanel());
+            tabbedPane.addTab("Asymmetric", new AsymmetricEncryptionPanel());
+            tabbedPane.addTab("Hash", new HashPanel());
+        });
+        BouncyCastleSupport.register();
+
+        Path dir = Files.createTempDirectory("enctool-cds");
+        try {
+            Path sample = dir.resolve("sample.txt");
+            Files.write(sample, "The quick brown fox jumps over the lazy dog\n".repeat(1000)
+                .getBytes(StandardCharsets.UTF_8));
+            String sampleFile = sample.toString();
+
+            String aesKey = new AESAlgorithm().generateKey(256);
+            String twofishKey = new TwofishAlgorithm().generateKey(256);
+            KeyPair keyPair = RSAUtils.generateKeyPair(2048);
+            String publicKey = CodecUtils.toBase64(keyPair.getPublic().getEncoded());
+            String privateKey = CodecUtils.toBase64(keyPair.getPrivate().getEncoded());
+
+            cli("hash", "-a", "SHA-256", sampleFile);
+            cli("encrypt", "-a", "AES", "-k", aesKey, "-o", dir.resolve("aes.enc").toString(), sampleFile);
+            cli("decrypt", "-k", aesKey, "-o", dir.resolve("aes.dec").toString(), dir.resolve("aes.enc").toString());
+            cli("encrypt", "-a", "Twofish", "-k", twofishKey, "-m", "CBC", "-p", "PKCS5Padding",
+                "-o", dir.resolve("twofish.enc").toString(), sampleFile);
+            cli("rsa-encrypt", "--public-key", publicKey, "-o", dir.resolve("rsa.enc").toString(), sampleFile);
+            cli("rsa-decrypt", "--private-key", privateKey, "-o", dir.resolve("rsa.dec").toString(),
+                dir.resolve("rsa.enc").toString());
+            cli("classic-encrypt", "-c", "vigenere", "-k", "KEY", "-o", dir.resolve("classic.enc").toString(),
+                sampleFile);
+            RSAUtils.decryptWithPublicKey(RSAUtils.encryptWithPrivateKey("training", privateKey), publicKey);
+        } finally {
+            deleteTree(dir);
+        }
+    }
+
+    private static void cli(String... args) {
+        int status = EncToolCli.run(args);
+        if (status != 0) {
+            throw new IllegalStateException("Training command failed with exit code " + status + ": " + args[0]);
+        }
+    }
+
+    private static void deleteTree(Path dir) throws IOException {
+        try (Stream<Path> paths = Files.walk(dir)) {
+            for (Path path : (Iterable<Path>) paths.sorted(Comparator.reverseOrder())::iterator) {
+                Files.delete(path);
+            }
+        }
+    }
+}
@@ -1,13 +1,25 @@
 package com.enctool.app;
 
-import org.bouncycastle.jce.provider.BouncyCastleProvider;
+import com.enctool.app.util.BouncyCastleSupport;
+
 import javax.swing.*;
 import java.awt.*;
-import java.security.Security;
+import java.awt.event.WindowAdapter;
+import java.awt.event.WindowEvent;
+import java.lang.management.ManagementFactory;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.function.Supplier;
 
 public class EncToolApp {
+    // Set to "true" to print the time from JVM start to the first frame, or "exit" to also quit then
+    private static final String STARTUP_TIMING_PROPERTY = "enctool.startupTiming";
+    
     private JFrame frame;
     private JTabbedPane tabbedPane;
+    
+    // Panels not built yet, by the placeholder standing in for them
+    private final Map<Component, Supplier<JComponent>> pendingTabs = new HashMap<>();
 
     public EncToolApp() {
         initializeUI();
@@ -23,36 +35,58 @@ public class EncToolApp {
         // Create a tabbed pane
         tabbedPane = new JTabbedPane();
 
-        // Create and add panels for each encryption type
-        tabbedPane.addTab("Traditional", new TraditionalEncryptionPanel());
-        tabbedPane.addTab("Symmetric", new SymmetricEncryptionPanel());
-        tabbedPane.addTab("Asymmetric", new AsymmetricEncryptionPanel());
-        tabbedPane.addTab("Hash", new HashPanel());
+        // Create and add panels for each encryption type; each panel is built
+        // when its tab is first selected, so only the first one delays startup
+        addTab("Traditional", TraditionalEncryptionPanel::new);
+        addTab("Symmetric", SymmetricEncryptionPanel::new);
+        addTab("Asymmetric", AsymmetricEncryptionPanel::new);
+        addTab("Hash", HashPanel::new);
+        tabbedPane.addChangeListener(e -> buildSelectedTab());
+        buildSelectedTab();
 
         // Add tabbed pane to frame
         frame.getContentPane().add(tabbedPane, BorderLayout.CENTER);
     }
 
+    /**
+     * Adds a tab whose panel is created on first selection
+     */
+    private void addTab(String title, Supplier<JComponent> panelFactory) {
+        JPanel placeholder = new JPanel(new BorderLayout());
+        pendingTabs.put(placeholder, panelFactory);
+        tabbedPane.addTab(title, placeholder);
+    }
+    
+    /**
+     * Builds the panel of the selected tab if it has not been built yet
+     */
+    private void buildSelectedTab() {
+        Component placeholder = tabbedPane.getSelectedComponent();
+        Supplier<JComponent> panelFactory = pendingTabs.remove(placeholder);
+        if (panelFactory != null) {
+            ((JPanel) placeholder).add(panelFactory.get(), BorderLayout.CENTER);
+            placeholder.revalidate();
+        }
+    }
+
     public void show() {
+        String timing = System.getProperty(STARTUP_TIMING_PROPERTY);
+        if (timing != null) {
+            frame.addWindowListener(new WindowAdapter() {
+                @Override
+                public void windowOpened(WindowEvent e) {
+                    long elapsed = System.currentTimeMillis() - ManagementFactory.getRuntimeMXBean().getStartTime();
+                    System.out.println("Time to first frame: " + elapsed + " ms");
+                    if ("exit".equals(timing)) {
+                        System.exit(0);
+                    }
+                }
+            });
+        }
         frame.setVisible(true);
     }
 
     public static void main(String[] args) {
-        // Initialize Bouncy Castle provider
-        try {
-            // Remove any existing BC provider to avoid duplicates
-            Security.removeProvider("BC");
-            // Add the BC provider with a specific position
-            Security.insertProviderAt(new BouncyCastleProvider(), 1);
-            // Verify the provider is properly installed
-            if (Security.getProvider("BC") == null) {
-                System.err.println("Bouncy Castle provider not installed");
-            }
-        } catch (Exception e) {
-            System.err.println("Error initializing Bouncy Castle provider: " + e.getMessage());
-            e.printStackTrace();
-        }
-
         // Set the look and feel to system default
         try {
             UIManager.setLookAndFeel(UIManager.getSystemLookAndFeelClassName());
@@ -64,6 +98,10 @@ public class EncToolApp {
         SwingUtilities.invokeLater(() -> {
             EncToolApp app = new EncToolApp();
             app.show();
+            // Bouncy Castle is only needed by Twofish, text-mode RSA and the few
+            // transformations the JDK lacks, so it is registered once the window
+            // is up rather than before it
+            BouncyCastleSupport.registerInBackground();
         });
     }
 }
@@ -1,15 +1,26 @@
 package com.enctool.app;
 
+import com.enctool.app.hash.DirectoryHasher;
+import com.enctool.app.hash.FileHasher;
+import com.enctool.app.hash.MultiDigestHasher;
+import com.enctool.app.hash.ResumableHasher;
+import com.enctool.app.hash.TreeHasher;
+import com.enctool.app.util.CodecUtils;
+import com.enctool.app.util.ProgressTracker;
+
 import javax.swing.*;
 import java.awt.*;
 import java.io.File;
-import java.io.FileInputStream;
 import java.io.IOException;
 import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
 import java.security.MessageDigest;
 import java.security.NoSuchAlgorithmException;
 import java.util.Arrays;
 import java.util.List;
+import java.util.Map;
 
 public class HashPanel extends JPanel {
     private JComboBox<String> algorithmComboBox;
@@ -21,13 +32,23 @@ public class HashPanel extends JPanel {
     private JRadioButton fileModeRadio;
     private JTextField filePathTextField;
     private JButton browseButton;
+    private JCheckBox treeHashCheckBox;
+    private JCheckBox allAlgorithmsCheckBox;
+    private JCheckBox resumableCheckBox;
     private JFileChooser fileChooser;
+    private ProgressPanel progressPanel;
     
     // List of supported hash algorithms (Java standard algorithms)
     private static final List<String> SUPPORTED_ALGORITHMS = Arrays.asList(
         "MD5", "SHA-1", "SHA-224", "SHA-256", "SHA-384", "SHA-512"
     );
     
+    // Name suffix of the index file written next to a hashed folder
+    private static final String DIRECTORY_INDEX_SUFFIX = ".hashes.tsv";
+    
+    // Files listed in the output area for a folder; the index holds all of them
+    private static final int MAX_LISTED_FILES = 1000;
+    
     public HashPanel() {
         setLayout(new BorderLayout());
         
@@ -70,9 +91,22 @@ public class HashPanel extends JPanel {
         filePathTextField = new JTextField(25);
         filePathTextField.setEditable(false);
         browseButton = new JButton("Browse...");
-        filePanel.add(new JLabel("File:"), BorderLayout.WEST);
+        filePanel.add(new JLabel("File or folder:"), BorderLayout.WEST);
         filePanel.add(filePathTextField, BorderLayout.CENTER);
         filePanel.add(browseButton, BorderLayout.EAST);
+        treeHashCheckBox = new JCheckBox("Parallel tree hash (SHA-2, 1 MiB leaves)");
+        treeHashCheckBox.setToolTipText("Merkle tree hash computed on all cores; "
+            + "the result differs from the plain hash of the file");
+        allAlgorithmsCheckBox = new JCheckBox("All algorithms in one pass");
+        allAlgorithmsCheckBox.setToolTipText("Reads the file once and computes every algorithm in the list");
+        resumableCheckBox = new JCheckBox("Resumable");
+        resumableCheckBox.setToolTipText("Saves progress to a checkpoint next to the file every 256 MiB, "
+            + "so an interrupted hash continues where it stopped");
+        JPanel fileOptionsPanel = new JPanel(new FlowLayout(FlowLayout.LEFT));
+        fileOptionsPanel.add(treeHashCheckBox);
+        fileOptionsPanel.add(allAlgorithmsCheckBox);
+        fileOptionsPanel.add(resumableCheckBox);
+        filePanel.add(fileOptionsPanel, BorderLayout.SOUTH);
         
         gbc.gridx = 0;
         gbc.gridy = 2;
@@ -115,9 +149,13 @@ public class HashPanel extends JPanel {
         add(controlPanel, BorderLayout.NORTH);
         add(textPanel, BorderLayout.CENTER);
         
+        // Progress of the hash running in the background
+        progressPanel = new ProgressPanel();
+        add(progressPanel, BorderLayout.SOUTH);
+        
         // Initialize file chooser
         fileChooser = new JFileChooser();
-        fileChooser.setFileSelectionMode(JFileChooser.FILES_ONLY);
+        fileChooser.setFileSelectionMode(JFileChooser.FILES_AND_DIRECTORIES);
         fileChooser.setMultiSelectionEnabled(false);
         
         // Add event listeners
@@ -131,6 +169,29 @@ public class HashPanel extends JPanel {
             inputTextArea.setEnabled(false);
         });
         
+        algorithmComboBox.addActionListener(e -> updateTreeHashOption());
+        updateTreeHashOption();
+        
+        // The tree hash, the all-algorithms pass and the resumable hash exclude each other
+        treeHashCheckBox.addActionListener(e -> {
+            if (treeHashCheckBox.isSelected()) {
+                allAlgorithmsCheckBox.setSelected(false);
+                resumableCheckBox.setSelected(false);
+            }
+        });
+        allAlgorithmsCheckBox.addActionListener(e -> {
+            if (allAlgorithmsCheckBox.isSelected()) {
+                treeHashCheckBox.setSelected(false);
+                resumableCheckBox.setSelected(false);
+            }
+        });
+        resumableCheckBox.addActionListener(e -> {
+            if (resumableCheckBox.isSelected()) {
+                treeHashCheckBox.setSelected(false);
+                allAlgorithmsCheckBox.setSelected(false);
+            }
+        });
+        
         browseButton.addActionListener(e -> {
             int returnVal = fileChooser.showOpenDialog(this);
             if (returnVal == JFileChooser.APPROVE_OPTION) {
@@ -140,28 +201,38 @@ public class HashPanel extends JPanel {
         });
         
         hashButton.addActionListener(e -> {
-            try {
-                String algorithm = (String) algorithmComboBox.getSelectedItem();
-                String result;
-                
-                if (textModeRadio.isSelected()) {
-                    String input = inputTextArea.getText();
-                    result = computeHash(input, algorithm);
+            String algorithm = (String) algorithmComboBox.getSelectedItem();
+            ProgressPanel.Task<String> task;
+            long total;
+            
+            if (textModeRadio.isSelected()) {
+                String input = inputTextArea.getText();
+                task = progress -> computeHash(input, algorithm);
+                total = 0;
+            } else {
+                String filePath = filePathTextField.getText();
+                if (filePath.isEmpty()) {
+                    JOptionPane.showMessageDialog(this, 
+                        "Please select a file first", 
+                        "Warning", JOptionPane.WARNING_MESSAGE);
+                    return;
+                }
+                Path path = Paths.get(filePath);
+                if (Files.isDirectory(path)) {
+                    // The folder hasher adds the size of each file it finds
+                    task = progress -> computeDirectoryHash(path, algorithm, progress);
+                    total = 0;
                 } else {
-                    String filePath = filePathTextField.getText();
-                    if (filePath.isEmpty()) {
-                        JOptionPane.showMessageDialog(this, 
-                            "Please select a file first", 
-                            "Warning", JOptionPane.WARNING_MESSAGE);
-                        return;
-                    }
-                    result = computeFileHash(filePath, algorithm);
+                    task = fileHashTask(path, algorithm);
+                    total = path.toFile().length();
                 }
-                
-                outputTextArea.setText(result);
-            } catch (Exception ex) {
-                outputTextArea.setText("Error computing hash: " + ex.getMessage());
             }
+            
+            outputTextArea.setText("");
+            progressPanel.run(total, task,
+                result -> outputTextArea.setText(result),
+                ex -> outputTextArea.setText("Error computing hash: " + ex.getMessage()),
+                hashButton, clearButton, browseButton);
         });
         
         clearButton.addActionListener(e -> {
@@ -177,34 +248,85 @@ public class HashPanel extends JPanel {
     private String computeHash(String input, String algorithm) throws NoSuchAlgorithmException {
         MessageDigest digest = MessageDigest.getInstance(algorithm);
         byte[] hashBytes = digest.digest(input.getBytes(StandardCharsets.UTF_8));
-        return bytesToHex(hashBytes);
+        return CodecUtils.toHex(hashBytes);
     }
     
     /**
-     * Computes the hash of a file using the specified algorithm
+     * Enables the tree hash option only for algorithms it is defined for
      */
-    private String computeFileHash(String filePath, String algorithm) throws NoSuchAlgorithmException, IOException {
-        File file = new File(filePath);
-        MessageDigest digest = MessageDigest.getInstance(algorithm);
+    private void updateTreeHashOption() {
+        boolean supported = TreeHasher.supports((String) algorithmComboBox.getSelectedItem());
+        treeHashCheckBox.setEnabled(supported);
+        if (!supported) {
+            treeHashCheckBox.setSelected(false);
+        }
+    }
+    
+    /**
+     * Creates the task hashing a file with the selected options. The options
+     * are read here, on the Event Dispatch Thread, not by the task.
+     */
+    private ProgressPanel.Task<String> fileHashTask(Path file, String algorithm) {
+        if (treeHashCheckBox.isSelected()) {
+            return progress -> CodecUtils.toHex(new TreeHasher(algorithm).withProgress(progress).hash(file));
+        }
         
-        try (FileInputStream fis = new FileInputStream(file)) {
-            byte[] buffer = new byte[8192];
-            int bytesRead;
-            while ((bytesRead = fis.read(buffer)) != -1) {
-                digest.update(buffer, 0, bytesRead);
-            }
+        if (allAlgorithmsCheckBox.isSelected()) {
+            return progress -> {
+                Map<String, byte[]> digests = new MultiDigestHasher(SUPPORTED_ALGORITHMS)
+                    .withProgress(progress).hash(file);
+                StringBuilder sb = new StringBuilder();
+                for (Map.Entry<String, byte[]> entry : digests.entrySet()) {
+                    sb.append(entry.getKey()).append(": ").append(CodecUtils.toHex(entry.getValue())).append('\n');
+                }
+                return sb.toString();
+            };
         }
         
-        return bytesToHex(digest.digest());
+        if (resumableCheckBox.isSelected()) {
+            return progress -> {
+                ResumableHasher.Result hashResult = new ResumableHasher(algorithm).withProgress(progress).hash(file);
+                String hex = CodecUtils.toHex(hashResult.getDigest());
+                if (hashResult.getResumedFrom() > 0) {
+                    hex += "\n(resumed from checkpoint at byte " + hashResult.getResumedFrom() + ")";
+                }
+                return hex;
+            };
+        }
+        
+        // Read through a direct buffer; mapping would keep the file locked on Windows
+        return progress -> CodecUtils.toHex(new FileHasher().withProgress(progress).hash(file, algorithm));
     }
     
     /**
-     * Convert a byte array to a hexadecimal string
+     * Hashes every file in a folder tree. The manifest is kept in an index file
+     * next to the folder, so a repeated run only hashes files that changed.
      */
-    private String bytesToHex(byte[] bytes) {
+    private String computeDirectoryHash(Path directory, String algorithm, ProgressTracker progress)
+            throws NoSuchAlgorithmException, IOException {
+        Path root = directory.toAbsolutePath();
+        Path indexFile = root.getParent() == null
+            ? root.resolve(DIRECTORY_INDEX_SUFFIX)
+            : root.resolveSibling(root.getFileName() + DIRECTORY_INDEX_SUFFIX);
+        
+        DirectoryHasher.Result result = new DirectoryHasher(algorithm).withProgress(progress).hash(root, indexFile);
+        
         StringBuilder sb = new StringBuilder();
-        for (byte b : bytes) {
-            sb.append(String.format("%02x", b));
+        sb.append(result.getEntries().size()).append(" files: ")
+            .append(result.getHashedCount()).append(" hashed, ")
+            .append(result.getReusedCount()).append(" unchanged, ")
+            .append(result.getErrors().size()).append(" failed\n");
+        sb.append("Index: ").append(indexFile).append("\n\n");
+        for (String error : result.getErrors()) {
+            sb.append("Error: ").append(error).append('\n');
+        }
+        int shown = 0;
+        for (DirectoryHasher.Entry entry : result.getEntries()) {
+            if (shown++ == MAX_LISTED_FILES) {
+                sb.append("... see the index for the full list\n");
+                break;
+            }
+            sb.append(entry.getDigest()).append("  ").append(entry.getPath()).append('\n');
         }
         return sb.toString();
     }
@@ -0,0 +1,19 @@
+package com.enctool.app;
+
+import com.enctool.app.cli.EncToolCli;
+
+/**
+ * Entry point of the jar: runs the command-line interface when arguments are
+ * given and the Swing application otherwise. It holds no UI references, so the
+ * command line never loads Swing or AWT classes.
+ */
+public class Launcher {
+
+    public static void main(String[] args) {
+        if (args.length > 0) {
+            EncToolCli.main(args);
+        } else {
+            EncToolApp.main(args);
+        }
+    }
+}
@@ -0,0 +1,178 @@
+package com.enctool.app;
+
+import com.enctool.app.util.ProgressTracker;
+
+import javax.swing.*;
+import java.awt.*;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.ExecutionException;
+import java.util.function.Consumer;
+
+/**
+ * Progress bar, throughput and Cancel button for the operations of a panel.
+ * The operation runs on a background thread so the UI stays responsive; the
+ * bar is refreshed from its tracker a few times per second. Cancel stops the
+ * operation at the next block it reports, in the middle of a file.
+ */
+public class ProgressPanel extends JPanel {
+
+    /**
+     * Work run off the Event Dispatch Thread
+     */
+    public interface Task<T> {
+        T run(ProgressTracker progress) throws Exception;
+    }
+
+    private static final int REFRESH_INTERVAL_MS = 100;
+    private static final int BAR_RESOLUTION = 1000;
+
+    private final JProgressBar progressBar;
+    private final JLabel statusLabel;
+    private final JButton cancelButton;
+    private final Timer refreshTimer;
+    private ProgressTracker tracker;
+
+    public ProgressPanel() {
+        setLayout(new BorderLayout(5, 0));
+        setBorder(BorderFactory.createEmptyBorder(5, 5, 5, 5));
+
+        progressBar = new JProgressBar(0, BAR_RESOLUTION);
+        statusLabel = new JLabel(" ");
+        cancelButton = new JButton("Cancel");
+        cancelButton.setEnabled(false);
+
+        add(progressBar, BorderLayout.CENTER);
+        add(statusLabel, BorderLayout.SOUTH);
+        add(cancelButton, BorderLayout.EAST);
+
+        refreshTimer = new Timer(REFRESH_INTERVAL_MS, e -> refresh());
+        cancelButton.addActionListener(e -> {
+            if (tracker != null) {
+                tracker.cancel();
+                cancelButton.setEnabled(false);
+                statusLabel.setText("Cancelling...");
+            }
+        });
+    }
+
+    /**
+     * Checks whether an operation is still running
+     */
+    public boolean isRunning() {
+        return tracker != null;
+    }
+
+    /**
+     * Runs an operation in the background. Must be called on the Event Dispatch
+     * Thread; the callbacks run there too. A cancelled operation calls neither
+     * callback.
+     *
+     * @param total bytes the operation will process, or 0 if unknown
+     * @param task the operation
+     * @param onSuccess receives the result
+     * @param onFailure receives the exception the operation threw
+     * @param controls components disabled while the operation runs
+     */
+    public <T> void run(long total, Task<T> task, Consumer<T> onSuccess, Consumer<Exception> onFailure,
+                        Component... controls) {
+        if (isRunning()) {
+            return;
+        }
+        ProgressTracker progress = new ProgressTracker(total);
+        tracker = progress;
+        for (Component control : controls) {
+            control.setEnabled(false);
+        }
+        cancelButton.setEnabled(true);
+        statusLabel.setText("Working...");
+        progressBar.setValue(0);
+        refresh();
+        refreshTimer.start();
+
+        new SwingWorker<T, Void>() {
+            @Override
+            protected T doInBackground() throws Exception {
+                return task.run(progress);
+            }
+
+            @Override
+            protected void done() {
+                refreshTimer.stop();
+                tracker = null;
+                cancelButton.setEnabled(false);
+                progressBar.setIndeterminate(false);
+                for (Component control : controls) {
+                    control.setEnabled(true);
+                }
+
+                T result;
+                try {
+                    result = get();
+                } catch (ExecutionException e) {
+                    if (progress.isCancelled()) {
+                        statusLabel.setText("Cancelled after " + formatBytes(progress.getDone()));
+                        return;
+                    }
+                    Throwable cause = e.getCause();
+                    statusLabel.setText("Failed");
+                    onFailure.accept(cause instanceof Exception ? (Exception) cause : new Exception(cause));
+                    return;
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    return;
+                }
+
+                progressBar.setValue(BAR_RESOLUTION);
+                statusLabel.setText(progress.getDone() > 0
+                    ? "Done: " + formatBytes(progress.getDone()) + " at " + formatRate(progress)
+                    : "Done");
+                onSuccess.accept(result);
+            }
+        }.execute();
+    }
+
+    /**
+     * Wraps a task writing a file so that a cancelled run deletes the
+     * incomplete output instead of leaving a truncated file behind
+     */
+    public static <T> Task<T> deletingOutputOnCancel(Path output, Task<T> task) {
+        return progress -> {
+            try {
+                return task.run(progress);
+            } catch (Exception e) {
+                if (progress.isCancelled()) {
+                    Files.deleteIfExists(output);
+                }
+                throw e;
+            }
+        };
+    }
+
+    /**
+     * Shows the tracker state; the bar is indeterminate while the total is unknown
+     */
+    private void refresh() {
+        ProgressTracker progress = tracker;
+        if (progress == null) {
+            return;
+        }
+        long total = progress.getTotal();
+        progressBar.setIndeterminate(total <= 0);
+        if (total > 0) {
+            progressBar.setValue((int) (progress.getFraction() * BAR_RESOLUTION));
+        }
+        if (progress.getDone() > 0 && !progress.isCancelled()) {
+            statusLabel.setText(formatBytes(progress.getDone())
+                + (total > 0 ? " of " + formatBytes(total) : "") + ", " + formatRate(progress));
+        }
+    }
+
+    private static String formatRate(ProgressTracker progress) {
+        return String.format("%.1f MB/s", progress.getBytesPerSecond() / 1e6);
+    }
+
+    private static String formatBytes(long bytes) {
+        return bytes < 1_000_000 ? bytes + " bytes" : String.format("%.1f MB", bytes / 1e6);
+    }
+}
@@ -3,18 +3,23 @@ package com.enctool.app;
 import com.enctool.app.algorithm.AESAlgorithm;
 import com.enctool.app.algorithm.BlowfishAlgorithm;
 import com.enctool.app.algorithm.DESAlgorithm;
+import com.enctool.app.algorithm.EncryptedFileCipher;
+import com.enctool.app.algorithm.EncryptedFileHeader;
+import com.enctool.app.algorithm.MappedFileCipher;
+import com.enctool.app.algorithm.ParallelCtrCipher;
 import com.enctool.app.algorithm.RC4Algorithm;
 import com.enctool.app.algorithm.TripleDESAlgorithm;
 import com.enctool.app.algorithm.SymmetricAlgorithm;
 import com.enctool.app.algorithm.TwofishAlgorithm;
+import com.enctool.app.util.ProgressTracker;
 
 import javax.swing.*;
 import javax.swing.filechooser.FileNameExtensionFilter;
 import java.awt.*;
 import java.io.*;
 import java.nio.file.Files;
+import java.nio.file.Path;
 import java.nio.file.Paths;
-import java.util.Base64;
 
 public class SymmetricEncryptionPanel extends JPanel {
     private JComboBox<String> algorithmComboBox;
@@ -46,8 +51,10 @@ public class SymmetricEncryptionPanel extends JPanel {
     private JButton selectOutputFileButton;
     private JFileChooser inputFileChooser;
     private JFileChooser outputFileChooser;
+    private JComboBox<String> fileBackendComboBox;
     private JPanel textPanel;
     private JPanel filePanel;
+    private ProgressPanel progressPanel;
     
     // Algorithm handler objects
     private SymmetricAlgorithm currentAlgorithm;
@@ -62,6 +69,10 @@ public class SymmetricEncryptionPanel extends JPanel {
     private static final String TEXT_MODE = "TEXT_MODE";
     private static final String FILE_MODE = "FILE_MODE";
     
+    // File I/O backends
+    private static final String STREAMING_BACKEND = "Streaming";
+    private static final String MAPPED_BACKEND = "Memory-mapped";
+    
     // CardLayout container
     private JPanel cardPanel;
     private CardLayout cardLayout;
@@ -229,6 +240,12 @@ public class SymmetricEncryptionPanel extends JPanel {
         outputFileSelectionPanel.add(selectOutputFileButton, BorderLayout.EAST);
         outputFilePanel.add(outputFileSelectionPanel, BorderLayout.CENTER);
         
+        JPanel fileBackendPanel = new JPanel(new FlowLayout(FlowLayout.LEFT));
+        fileBackendComboBox = new JComboBox<>(new String[]{STREAMING_BACKEND, MAPPED_BACKEND});
+        fileBackendPanel.add(new JLabel("File I/O:"));
+        fileBackendPanel.add(fileBackendComboBox);
+        outputFilePanel.add(fileBackendPanel, BorderLayout.SOUTH);
+        
         filePanel.add(inputFilePanel);
         filePanel.add(outputFilePanel);
         
@@ -245,6 +262,10 @@ public class SymmetricEncryptionPanel extends JPanel {
         add(controlPanel, BorderLayout.NORTH);
         add(cardPanel, BorderLayout.CENTER);
         
+        // Progress of the operation running in the background
+        progressPanel = new ProgressPanel();
+        add(progressPanel, BorderLayout.SOUTH);
+        
         // Add event listeners for mode selection
         textModeRadio.addActionListener(e -> {
             cardLayout.show(cardPanel, TEXT_MODE);
@@ -394,112 +415,118 @@ public class SymmetricEncryptionPanel extends JPanel {
         });
         
         encryptButton.addActionListener(e -> {
-            try {
-                String key = new String(keyPasswordField.getPassword());
-                String mode = (String) modeComboBox.getSelectedItem();
-                String padding = (String) paddingComboBox.getSelectedItem();
-                String iv = ivTextField.getText();
-                
-                if (key.isEmpty()) {
-                    JOptionPane.showMessageDialog(this, 
-                        "Please enter or generate a key first", 
-                        "Warning", JOptionPane.WARNING_MESSAGE);
-                    return;
-                }
+            String key = new String(keyPasswordField.getPassword());
+            String mode = (String) modeComboBox.getSelectedItem();
+            String padding = (String) paddingComboBox.getSelectedItem();
+            String iv = ivTextField.getText();
+            
+            if (key.isEmpty()) {
+                JOptionPane.showMessageDialog(this, 
+                    "Please enter or generate a key first", 
+                    "Warning", JOptionPane.WARNING_MESSAGE);
+                return;
+            }
+            
+            if (currentAlgorithm.requiresIV(mode) && iv.isEmpty()) {
+                JOptionPane.showMessageDialog(this,
+                    "This mode requires an IV. Please enter or generate one.",
+                    "Warning", JOptionPane.WARNING_MESSAGE);
+                return;
+            }
+            
+            SymmetricAlgorithm algorithm = currentAlgorithm;
+            if (textModeRadio.isSelected()) {
+                // Text mode encryption
+                String input = inputTextArea.getText();
+                progressPanel.run(0, progress -> algorithm.encrypt(input, key, mode, padding, iv),
+                    encrypted -> outputTextArea.setText(encrypted),
+                    ex -> outputTextArea.setText("Encryption error: " + ex.getMessage()),
+                    getActionControls());
+            } else {
+                // File mode encryption
+                String inputFilePath = inputFileTextField.getText();
+                String outputFilePath = outputFileTextField.getText();
                 
-                if (currentAlgorithm.requiresIV(mode) && iv.isEmpty()) {
+                if (inputFilePath.isEmpty() || outputFilePath.isEmpty()) {
                     JOptionPane.showMessageDialog(this,
-                        "This mode requires an IV. Please enter or generate one.",
+                        "Please select both input and output files",
                         "Warning", JOptionPane.WARNING_MESSAGE);
                     return;
                 }
                 
-                if (textModeRadio.isSelected()) {
-                    // Text mode encryption
-                    String input = inputTextArea.getText();
-                    String encrypted = currentAlgorithm.encrypt(input, key, mode, padding, iv);
-                    outputTextArea.setText(encrypted);
-                } else {
-                    // File mode encryption
-                    String inputFilePath = inputFileTextField.getText();
-                    String outputFilePath = outputFileTextField.getText();
-                    
-                    if (inputFilePath.isEmpty() || outputFilePath.isEmpty()) {
-                        JOptionPane.showMessageDialog(this,
-                            "Please select both input and output files",
-                            "Warning", JOptionPane.WARNING_MESSAGE);
-                        return;
-                    }
-                    
-                    encryptFile(inputFilePath, outputFilePath, key, mode, padding, iv);
-                    JOptionPane.showMessageDialog(this,
-                        "File encrypted successfully",
-                        "Success", JOptionPane.INFORMATION_MESSAGE);
-                }
-            } catch (Exception ex) {
-                String errorMsg = "Encryption error: " + ex.getMessage();
-                if (textModeRadio.isSelected()) {
-                    outputTextArea.setText(errorMsg);
-                } else {
-                    JOptionPane.showMessageDialog(this,
-                        errorMsg,
-                        "Error", JOptionPane.ERROR_MESSAGE);
-                }
+                progressPanel.run(new File(inputFilePath).length(),
+                    encryptFileTask(inputFilePath, outputFilePath, key, mode, padding, iv),
+                    header -> JOptionPane.showMessageDialog(this,
+                        "File encrypted successfully (" + header + ")",
+                        "Success", JOptionPane.INFORMATION_MESSAGE),
+                    ex -> JOptionPane.showMessageDialog(this,
+                        "Encryption error: " + ex.getMessage(),
+                        "Error", JOptionPane.ERROR_MESSAGE),
+                    getActionControls());
             }
         });
         
         decryptButton.addActionListener(e -> {
+            String key = new String(keyPasswordField.getPassword());
+            String mode = (String) modeComboBox.getSelectedItem();
+            String padding = (String) paddingComboBox.getSelectedItem();
+            String iv = ivTextField.getText();
+            
+            if (key.isEmpty()) {
+                JOptionPane.showMessageDialog(this, 
+                    "Please enter a key", 
+                    "Warning", JOptionPane.WARNING_MESSAGE);
+                return;
+            }
+            
+            // Files with a header carry their own IV
+            boolean selfDescribing;
             try {
-                String key = new String(keyPasswordField.getPassword());
-                String mode = (String) modeComboBox.getSelectedItem();
-                String padding = (String) paddingComboBox.getSelectedItem();
-                String iv = ivTextField.getText();
-                
-                if (key.isEmpty()) {
-                    JOptionPane.showMessageDialog(this, 
-                        "Please enter a key", 
-                        "Warning", JOptionPane.WARNING_MESSAGE);
-                    return;
-                }
+                selfDescribing = fileModeRadio.isSelected()
+                    && EncryptedFileHeader.isEncryptedFile(Paths.get(inputFileTextField.getText()));
+            } catch (IOException ex) {
+                JOptionPane.showMessageDialog(this,
+                    "Decryption error: " + ex.getMessage(),
+                    "Error", JOptionPane.ERROR_MESSAGE);
+                return;
+            }
+            if (currentAlgorithm.requiresIV(mode) && iv.isEmpty() && !selfDescribing) {
+                JOptionPane.showMessageDialog(this,
+                    "This mode requires an IV. Please enter the same IV used for encryption.",
+                    "Warning", JOptionPane.WARNING_MESSAGE);
+                return;
+            }
+            
+            SymmetricAlgorithm algorithm = currentAlgorithm;
+            if (textModeRadio.isSelected()) {
+                // Text mode decryption
+                String input = inputTextArea.getText();
+                progressPanel.run(0, progress -> algorithm.decrypt(input, key, mode, padding, iv),
+                    decrypted -> outputTextArea.setText(decrypted),
+                    ex -> outputTextArea.setText("Decryption error: " + ex.getMessage()),
+                    getActionControls());
+            } else {
+                // File mode decryption
+                String inputFilePath = inputFileTextField.getText();
+                String outputFilePath = outputFileTextField.getText();
                 
-                if (currentAlgorithm.requiresIV(mode) && iv.isEmpty()) {
+                if (inputFilePath.isEmpty() || outputFilePath.isEmpty()) {
                     JOptionPane.showMessageDialog(this,
-                        "This mode requires an IV. Please enter the same IV used for encryption.",
+                        "Please select both input and output files",
                         "Warning", JOptionPane.WARNING_MESSAGE);
                     return;
                 }
                 
-                if (textModeRadio.isSelected()) {
-                    // Text mode decryption
-                    String input = inputTextArea.getText();
-                    String decrypted = currentAlgorithm.decrypt(input, key, mode, padding, iv);
-                    outputTextArea.setText(decrypted);
-                } else {
-                    // File mode decryption
-                    String inputFilePath = inputFileTextField.getText();
-                    String outputFilePath = outputFileTextField.getText();
-                    
-                    if (inputFilePath.isEmpty() || outputFilePath.isEmpty()) {
-                        JOptionPane.showMessageDialog(this,
-                            "Please select both input and output files",
-                            "Warning", JOptionPane.WARNING_MESSAGE);
-                        return;
-                    }
-                    
-                    decryptFile(inputFilePath, outputFilePath, key, mode, padding, iv);
-                    JOptionPane.showMessageDialog(this,
-                        "File decrypted successfully",
-                        "Success", JOptionPane.INFORMATION_MESSAGE);
-                }
-            } catch (Exception ex) {
-                String errorMsg = "Decryption error: " + ex.getMessage();
-                if (textModeRadio.isSelected()) {
-                    outputTextArea.setText(errorMsg);
-                } else {
-                    JOptionPane.showMessageDialog(this,
-                        errorMsg,
-                        "Error", JOptionPane.ERROR_MESSAGE);
-                }
+                progressPanel.run(new File(inputFilePath).length(),
+                    decryptFileTask(inputFilePath, outputFilePath, key, mode, padding, iv, selfDescribing),
+                    header -> JOptionPane.showMessageDialog(this,
+                        header == null ? "File decrypted successfully"
+                            : "File decrypted successfully (" + header + ")",
+                        "Success", JOptionPane.INFORMATION_MESSAGE),
+                    ex -> JOptionPane.showMessageDialog(this,
+                        "Decryption error: " + ex.getMessage(),
+                        "Error", JOptionPane.ERROR_MESSAGE),
+                    getActionControls());
             }
         });
         
@@ -510,41 +537,79 @@ public class SymmetricEncryptionPanel extends JPanel {
     }
     
     /**
-     * Encrypts a file using the specified parameters
+     * Creates the task encrypting a file using the specified parameters.
+     * The output starts with a header recording the algorithm, mode, padding and IV,
+     * so it can later be decrypted with the key alone.
      */
-    private void encryptFile(String inputFilePath, String outputFilePath, 
-                             String key, String mode, String padding, String iv) 
-                             throws IOException {
-        File inputFile = new File(inputFilePath);
-        byte[] fileContent = Files.readAllBytes(inputFile.toPath());
-        
-        // Convert the file content to Base64 to use existing encryption method
-        String base64Content = Base64.getEncoder().encodeToString(fileContent);
-        String encryptedContent = currentAlgorithm.encrypt(base64Content, key, mode, padding, iv);
-        
-        // Write encrypted content to output file
-        try (FileWriter writer = new FileWriter(outputFilePath)) {
-            writer.write(encryptedContent);
-        }
+    private ProgressPanel.Task<EncryptedFileHeader> encryptFileTask(String inputFilePath, String outputFilePath,
+                                                                    String key, String mode, String padding,
+                                                                    String iv) {
+        SymmetricAlgorithm algorithm = currentAlgorithm;
+        EncryptedFileCipher fileCipher = createFileCipher();
+        Path input = Paths.get(inputFilePath);
+        Path output = Paths.get(outputFilePath);
+        return ProgressPanel.deletingOutputOnCancel(output, progress ->
+            fileCipher.withProgress(progress).encrypt(algorithm, input, output, key, mode, padding, iv));
     }
     
     /**
-     * Decrypts a file using the specified parameters
+     * Creates the task decrypting a file using the specified parameters.
+     * Files with a header are decrypted with the settings stored in it, which are
+     * returned; headerless raw ciphertext uses the selected settings and returns null.
+     * The data is streamed (or memory-mapped) through the cipher into the output
+     * file; CTR mode without padding is spread over all cores instead.
      */
-    private void decryptFile(String inputFilePath, String outputFilePath, 
-                             String key, String mode, String padding, String iv) 
-                             throws IOException {
-        // Read encrypted content
-        String encryptedContent = new String(Files.readAllBytes(Paths.get(inputFilePath)));
-        
-        // Decrypt content
-        String decryptedBase64 = currentAlgorithm.decrypt(encryptedContent, key, mode, padding, iv);
-        byte[] decryptedBytes = Base64.getDecoder().decode(decryptedBase64);
-        
-        // Write decrypted content to output file
-        try (FileOutputStream fos = new FileOutputStream(outputFilePath)) {
-            fos.write(decryptedBytes);
+    private ProgressPanel.Task<EncryptedFileHeader> decryptFileTask(String inputFilePath, String outputFilePath,
+                                                                    String key, String mode, String padding,
+                                                                    String iv, boolean selfDescribing) {
+        SymmetricAlgorithm algorithm = currentAlgorithm;
+        boolean mapped = MAPPED_BACKEND.equals(fileBackendComboBox.getSelectedItem());
+        EncryptedFileCipher fileCipher = createFileCipher();
+        Path input = Paths.get(inputFilePath);
+        Path output = Paths.get(outputFilePath);
+        return ProgressPanel.deletingOutputOnCancel(output, progress ->
+            decryptFile(algorithm, fileCipher, mapped, input, output, key, mode, padding, iv, selfDescribing,
+                progress));
+    }
+    
+    private static EncryptedFileHeader decryptFile(SymmetricAlgorithm algorithm, EncryptedFileCipher fileCipher,
+                                                   boolean mapped, Path input, Path output, String key,
+                                                   String mode, String padding, String iv, boolean selfDescribing,
+                                                   ProgressTracker progress) throws IOException {
+        if (selfDescribing) {
+            return fileCipher.withProgress(progress).decrypt(input, output, key);
         }
+        
+        if (ParallelCtrCipher.supports(algorithm, mode, padding)) {
+            new ParallelCtrCipher(algorithm).withProgress(progress).transform(input, output, key, iv);
+            return null;
+        }
+        
+        if (mapped) {
+            new MappedFileCipher(algorithm).withProgress(progress).decrypt(input, output, key, mode, padding, iv);
+            return null;
+        }
+        
+        try (InputStream in = Files.newInputStream(input);
+             OutputStream out = Files.newOutputStream(output)) {
+            algorithm.decrypt(in, out, key, mode, padding, iv, progress);
+        }
+        return null;
+    }
+    
+    /**
+     * Controls disabled while an operation runs
+     */
+    private Component[] getActionControls() {
+        return new Component[]{encryptButton, decryptButton, selectInputFileButton, selectOutputFileButton};
+    }
+    
+    /**
+     * Creates the file cipher for the selected I/O backend
+     */
+    private EncryptedFileCipher createFileCipher() {
+        boolean mapped = MAPPED_BACKEND.equals(fileBackendComboBox.getSelectedItem());
+        return new EncryptedFileCipher(EncryptedFileCipher.DEFAULT_CHUNK_SIZE, mapped);
     }
     
     /**
@@ -1,11 +1,23 @@
 package com.enctool.app;
 
 import com.enctool.app.traditional.*;
+import com.enctool.app.util.ProgressTracker;
+
 import javax.swing.*;
 import javax.swing.border.TitledBorder;
 import java.awt.*;
 import java.awt.event.ActionEvent;
 import java.awt.event.ActionListener;
+import java.io.File;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
 import java.security.SecureRandom;
 import java.util.Arrays;
 import java.util.HashMap;
@@ -19,6 +31,10 @@ public class TraditionalEncryptionPanel extends JPanel {
     private JButton encryptButton;
     private JButton decryptButton;
     private JButton generateKeyButton;
+    private JButton encryptFileButton;
+    private JButton decryptFileButton;
+    private JFileChooser fileChooser;
+    private ProgressPanel progressPanel;
     
     // Hill Cipher specific components
     private JPanel hillKeyPanel;
@@ -73,6 +89,9 @@ public class TraditionalEncryptionPanel extends JPanel {
         
         encryptButton = new JButton("Encrypt");
         decryptButton = new JButton("Decrypt");
+        encryptFileButton = new JButton("Encrypt File...");
+        decryptFileButton = new JButton("Decrypt File...");
+        fileChooser = new JFileChooser();
 
         // Add components to control panel
         gbc.gridx = 0; gbc.gridy = 0;
@@ -101,6 +120,11 @@ public class TraditionalEncryptionPanel extends JPanel {
         gbc.gridx = 1;
         controlPanel.add(decryptButton, gbc);
 
+        gbc.gridx = 0; gbc.gridy = 4;
+        controlPanel.add(encryptFileButton, gbc);
+        gbc.gridx = 1;
+        controlPanel.add(decryptFileButton, gbc);
+
         // Create text areas
         JPanel textPanel = new JPanel(new GridLayout(2, 1, 0, 10));
 
@@ -122,26 +146,15 @@ public class TraditionalEncryptionPanel extends JPanel {
         add(controlPanel, BorderLayout.NORTH);
         add(textPanel, BorderLayout.CENTER);
 
-        // Add action listeners
-        encryptButton.addActionListener(e -> {
-            String input = inputTextArea.getText();
-            String key = getKeyFromUI();
-            String cipher = (String) cipherComboBox.getSelectedItem();
-            String language = (String) languageComboBox.getSelectedItem();
-
-            String output = performTraditionalEncryption(input, key, cipher, language, true);
-            outputTextArea.setText(output);
-        });
+        progressPanel = new ProgressPanel();
+        add(progressPanel, BorderLayout.SOUTH);
 
-        decryptButton.addActionListener(e -> {
-            String input = inputTextArea.getText();
-            String key = getKeyFromUI();
-            String cipher = (String) cipherComboBox.getSelectedItem();
-            String language = (String) languageComboBox.getSelectedItem();
+        // Add action listeners
+        encryptButton.addActionListener(e -> processText(true));
+        decryptButton.addActionListener(e -> processText(false));
 
-            String output = performTraditionalEncryption(input, key, cipher, language, false);
-            outputTextArea.setText(output);
-        });
+        encryptFileButton.addActionListener(e -> processFile(true));
+        decryptFileButton.addActionListener(e -> processFile(false));
 
         // Add listener for language change to update the UI
         languageComboBox.addActionListener(e -> {
@@ -342,6 +355,128 @@ public class TraditionalEncryptionPanel extends JPanel {
         }
     }
 
+    /**
+     * Encrypts or decrypts the text of the input area. Texts longer than one
+     * segment of {@link ParallelTextCipher} are processed in segments on all
+     * cores, in the background with the progress panel so the UI stays
+     * responsive; the output area is filled when they are done.
+     */
+    private void processText(boolean encrypt) {
+        String input = inputTextArea.getText();
+        String key = getKeyFromUI();
+        String cipher = (String) cipherComboBox.getSelectedItem();
+        String language = (String) languageComboBox.getSelectedItem();
+
+        CipherAlgorithm algorithm = cipherAlgorithms.get(cipher);
+        if (algorithm == null || input.length() <= ParallelTextCipher.DEFAULT_SEGMENT_SIZE) {
+            outputTextArea.setText(performTraditionalEncryption(input, key, cipher, language, encrypt));
+            return;
+        }
+
+        PreparedCipher prepared;
+        try {
+            prepared = algorithm.prepare(key, language);
+        } catch (IllegalArgumentException e) {
+            outputTextArea.setText("Error: " + e.getMessage());
+            return;
+        }
+        ParallelTextCipher parallel = new ParallelTextCipher(prepared);
+        progressPanel.run(0,
+                progress -> {
+                    String output = encrypt ? parallel.encrypt(input) : parallel.decrypt(input);
+                    // A cancelled run leaves the output area as it was
+                    progress.checkCancelled();
+                    return output;
+                },
+                outputTextArea::setText,
+                ex -> outputTextArea.setText("Error: " + ex.getMessage()),
+                encryptButton, decryptButton, encryptFileButton, decryptFileButton);
+    }
+
+    /**
+     * Asks for an input and an output file and streams the input through the
+     * selected cipher, for texts too large to edit in the text areas. The file
+     * is read and written as UTF-8. The key is checked before the files are chosen.
+     */
+    private void processFile(boolean encrypt) {
+        CipherAlgorithm algorithm = cipherAlgorithms.get((String) cipherComboBox.getSelectedItem());
+        PreparedCipher cipher;
+        try {
+            cipher = algorithm.prepare(getKeyFromUI(), (String) languageComboBox.getSelectedItem());
+        } catch (IllegalArgumentException e) {
+            JOptionPane.showMessageDialog(this, "Invalid key: " + e.getMessage(),
+                    "Error", JOptionPane.ERROR_MESSAGE);
+            return;
+        }
+        
+        if (fileChooser.showOpenDialog(this) != JFileChooser.APPROVE_OPTION) {
+            return;
+        }
+        Path input = fileChooser.getSelectedFile().toPath();
+        fileChooser.setSelectedFile(new File(input + (encrypt ? ".enc.txt" : ".dec.txt")));
+        if (fileChooser.showSaveDialog(this) != JFileChooser.APPROVE_OPTION) {
+            return;
+        }
+        Path output = fileChooser.getSelectedFile().toPath();
+        if (output.toAbsolutePath().equals(input.toAbsolutePath())) {
+            JOptionPane.showMessageDialog(this,
+                    "The output file must differ from the input file",
+                    "Warning", JOptionPane.WARNING_MESSAGE);
+            return;
+        }
+        
+        progressPanel.run(input.toFile().length(),
+                ProgressPanel.deletingOutputOnCancel(output, progress -> {
+                    try (Reader reader = new InputStreamReader(
+                            new ProgressInputStream(Files.newInputStream(input), progress), StandardCharsets.UTF_8);
+                         Writer writer = Files.newBufferedWriter(output, StandardCharsets.UTF_8)) {
+                        if (encrypt) {
+                            cipher.encrypt(reader, writer);
+                        } else {
+                            cipher.decrypt(reader, writer);
+                        }
+                    }
+                    return output;
+                }),
+                written -> JOptionPane.showMessageDialog(this,
+                        "File " + (encrypt ? "encrypted" : "decrypted") + " successfully: " + written,
+                        "Success", JOptionPane.INFORMATION_MESSAGE),
+                ex -> JOptionPane.showMessageDialog(this,
+                        (encrypt ? "Encryption" : "Decryption") + " error: " + ex.getMessage(),
+                        "Error", JOptionPane.ERROR_MESSAGE),
+                encryptButton, decryptButton, encryptFileButton, decryptFileButton);
+    }
+
+    /**
+     * Reports the bytes read to a tracker, which can cancel the operation between two reads
+     */
+    private static class ProgressInputStream extends FilterInputStream {
+        private final ProgressTracker progress;
+
+        ProgressInputStream(InputStream in, ProgressTracker progress) {
+            super(in);
+            this.progress = progress;
+        }
+
+        @Override
+        public int read() throws IOException {
+            int b = super.read();
+            if (b != -1) {
+                progress.advance(1);
+            }
+            return b;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            int bytesRead = super.read(b, off, len);
+            if (bytesRead > 0) {
+                progress.advance(bytesRead);
+            }
+            return bytesRead;
+        }
+    }
+
     private String getAlphabet(String language) {
         return language.equals("English") ? ENGLISH_ALPHABET : VIETNAMESE_ALPHABET;
     }
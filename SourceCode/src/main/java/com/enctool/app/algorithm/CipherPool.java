@@ -0,0 +1,270 @@
+package com.enctool.app.algorithm;
+
+import com.enctool.app.util.BouncyCastleSupport;
+
+import javax.crypto.Cipher;
+import javax.crypto.spec.GCMParameterSpec;
+import javax.crypto.spec.IvParameterSpec;
+import javax.security.auth.Destroyable;
+import java.io.IOException;
+import java.security.GeneralSecurityException;
+import java.security.Key;
+import java.security.spec.AlgorithmParameterSpec;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Per-thread cache of Cipher objects keyed by transformation, provider and operation mode.
+ * Looking up a Cipher through the provider framework is expensive, so each thread
+ * keeps the ciphers it has used and only re-initializes one when the operation
+ * mode, key or parameters differ from the previous use. Ciphers initialized
+ * with a key that has since been destroyed are dropped on the thread's next use
+ * of the pool, see {@link #keyDestroyed()}.
+ */
+public final class CipherPool {
+
+    // Maximum number of cached ciphers per thread; the least recently used one is dropped
+    private static final int MAX_ENTRIES_PER_THREAD = 16;
+
+    private static final LongAdder hits = new LongAdder();
+    private static final LongAdder reinitializations = new LongAdder();
+    private static final LongAdder misses = new LongAdder();
+
+    // Number of keys destroyed so far; a thread that has seen fewer checks its ciphers
+    private static final AtomicLong destroyedKeys = new AtomicLong();
+
+    private static final ThreadLocal<ThreadCache> CACHE = ThreadLocal.withInitial(ThreadCache::new);
+
+    /**
+     * Work performed with an initialized cipher
+     */
+    @FunctionalInterface
+    public interface CipherOperation<T> {
+        T apply(Cipher cipher) throws GeneralSecurityException, IOException;
+    }
+
+    private CipherPool() {
+    }
+
+    /**
+     * Runs an operation with a cipher for the given transformation that has been
+     * initialized with the given mode, key and parameters.
+     *
+     * @param transformation the transformation, e.g. "AES/CBC/PKCS5Padding"
+     * @param provider the provider name, or null for the default provider lookup
+     * @param opmode the Cipher operation mode
+     * @param key the key
+     * @param params the algorithm parameters, or null if the mode takes none
+     * @param operation the work to perform with the cipher
+     * @return the result of the operation
+     */
+    public static <T> T execute(String transformation, String provider, int opmode, Key key,
+                                AlgorithmParameterSpec params, CipherOperation<T> operation)
+            throws GeneralSecurityException, IOException {
+        ThreadCache cache = CACHE.get();
+        cache.dropDestroyedKeys();
+        String cacheKey = (provider == null ? "" : provider) + ":" + transformation + ":" + opmode;
+        Entry entry = cache.get(cacheKey);
+
+        if (entry != null && entry.inUse) {
+            // Nested use of the same transformation on this thread: use a throwaway cipher
+            Cipher cipher = newCipher(transformation, provider);
+            init(cipher, opmode, key, params);
+            return operation.apply(cipher);
+        }
+
+        if (entry == null || mustReplace(entry, opmode, key, params)) {
+            entry = new Entry(newCipher(transformation, provider));
+            cache.put(cacheKey, entry);
+            init(entry.cipher, opmode, key, params);
+            entry.remember(opmode, key, params);
+        } else if (entry.ready && entry.matches(opmode, key, params)) {
+            // Cipher is already back in its initialized state after the last doFinal
+            hits.increment();
+        } else {
+            reinitializations.increment();
+            init(entry.cipher, opmode, key, params);
+            entry.remember(opmode, key, params);
+        }
+
+        entry.inUse = true;
+        entry.ready = false;
+        try {
+            T result = operation.apply(entry.cipher);
+            // Only a cipher that completed its operation can be reused without init
+            entry.ready = true;
+            return result;
+        } finally {
+            entry.inUse = false;
+        }
+    }
+
+    /**
+     * Tells the pool that a key has been destroyed. Every thread drops its
+     * ciphers initialized with a destroyed key the next time it uses the pool.
+     */
+    public static void keyDestroyed() {
+        destroyedKeys.incrementAndGet();
+    }
+
+    /**
+     * Number of operations that reused a cached cipher without re-initializing it
+     */
+    public static long getHitCount() {
+        return hits.sum();
+    }
+
+    /**
+     * Number of operations that reused a cached cipher with a new key or parameters
+     */
+    public static long getReinitializationCount() {
+        return reinitializations.sum();
+    }
+
+    /**
+     * Number of operations that had to create a new Cipher object
+     */
+    public static long getMissCount() {
+        return misses.sum();
+    }
+
+    /**
+     * Resets all counters to zero
+     */
+    public static void resetStatistics() {
+        hits.reset();
+        reinitializations.reset();
+        misses.reset();
+    }
+
+    /**
+     * Returns a one-line summary of the counters
+     */
+    public static String getStatistics() {
+        return "Cipher pool: " + getHitCount() + " hits, " + getReinitializationCount()
+            + " re-initializations, " + getMissCount() + " misses";
+    }
+
+    private static Cipher newCipher(String transformation, String provider) throws GeneralSecurityException {
+        misses.increment();
+        return provider == null ? BouncyCastleSupport.getCipher(transformation) : Cipher.getInstance(transformation, provider);
+    }
+
+    private static void init(Cipher cipher, int opmode, Key key, AlgorithmParameterSpec params)
+            throws GeneralSecurityException {
+        if (params != null) {
+            cipher.init(opmode, key, params);
+        } else {
+            cipher.init(opmode, key);
+        }
+    }
+
+    /**
+     * GCM refuses to encrypt twice with the same key and IV, even after a re-init,
+     * so repeating such an operation needs a fresh cipher object. The same holds
+     * when no IV is given and the cipher generated one: a new cipher generates a
+     * new IV.
+     */
+    private static boolean mustReplace(Entry entry, int opmode, Key key, AlgorithmParameterSpec params) {
+        if (opmode != Cipher.ENCRYPT_MODE) {
+            return false;
+        }
+        if (params == null) {
+            return entry.generatedIV && entry.cipher.getAlgorithm().toUpperCase().contains("/GCM/");
+        }
+        return params instanceof GCMParameterSpec && entry.matches(opmode, key, params);
+    }
+
+    private static byte[] ivOf(AlgorithmParameterSpec params) {
+        if (params instanceof IvParameterSpec) {
+            return ((IvParameterSpec) params).getIV();
+        }
+        if (params instanceof GCMParameterSpec) {
+            return ((GCMParameterSpec) params).getIV();
+        }
+        return null;
+    }
+
+    private static int tagLengthOf(AlgorithmParameterSpec params) {
+        return params instanceof GCMParameterSpec ? ((GCMParameterSpec) params).getTLen() : 0;
+    }
+
+    /**
+     * The ciphers of one thread, least recently used first
+     */
+    private static final class ThreadCache extends LinkedHashMap<String, Entry> {
+        private static final long serialVersionUID = 1L;
+
+        private long seenDestroyedKeys;
+
+        ThreadCache() {
+            super(MAX_ENTRIES_PER_THREAD, 0.75f, true);
+        }
+
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, Entry> eldest) {
+            return size() > MAX_ENTRIES_PER_THREAD;
+        }
+
+        /**
+         * Drops the ciphers whose key was destroyed since the last check
+         */
+        void dropDestroyedKeys() {
+            long destroyed = destroyedKeys.get();
+            if (destroyed != seenDestroyedKeys) {
+                seenDestroyedKeys = destroyed;
+                values().removeIf(entry -> entry.key instanceof Destroyable
+                    && ((Destroyable) entry.key).isDestroyed());
+            }
+        }
+    }
+
+    /**
+     * A cached cipher together with the settings it was last initialized with
+     */
+    private static final class Entry {
+        final Cipher cipher;
+        int opmode;
+        Key key;
+        Class<?> paramsType;
+        byte[] iv;
+        int tagLength;
+        // Initialized without parameters in a mode that takes an IV, which the cipher generated
+        boolean generatedIV;
+        boolean inUse;
+        boolean ready;
+
+        Entry(Cipher cipher) {
+            this.cipher = cipher;
+        }
+
+        void remember(int opmode, Key key, AlgorithmParameterSpec params) {
+            this.opmode = opmode;
+            this.key = key;
+            this.paramsType = params == null ? null : params.getClass();
+            this.iv = ivOf(params);
+            this.tagLength = tagLengthOf(params);
+            this.generatedIV = params == null && cipher.getIV() != null;
+        }
+
+        boolean matches(int opmode, Key key, AlgorithmParameterSpec params) {
+            if (this.opmode != opmode || (params == null ? paramsType != null : params.getClass() != paramsType)) {
+                return false;
+            }
+            // Parameter types we cannot compare are never treated as a match
+            if (params != null && ivOf(params) == null) {
+                return false;
+            }
+            // Reusing a generated IV would repeat it; a re-init generates a new one
+            if (params == null && generatedIV && opmode == Cipher.ENCRYPT_MODE) {
+                return false;
+            }
+            return (this.key == key || this.key.equals(key))
+                && Arrays.equals(iv, ivOf(params))
+                && tagLength == tagLengthOf(params);
+        }
+    }
+}
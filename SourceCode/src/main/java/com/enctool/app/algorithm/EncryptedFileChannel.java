@@ -0,0 +1,259 @@
+package com.enctool.app.algorithm;
+
+import javax.crypto.Cipher;
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.FileChannel;
+import java.nio.channels.NonWritableChannelException;
+import java.nio.channels.SeekableByteChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.security.GeneralSecurityException;
+
+/**
+ * Read-only channel over the plaintext of an encrypted file in the format of
+ * {@link EncryptedFileHeader}, with random access.
+ * A read only decrypts the ciphertext overlapping the requested range, so the cost
+ * of reading near the end of a large file does not depend on the file size.
+ * <p>
+ * Supported are CTR mode without padding, where the counter for any block can be
+ * computed from the IV, and chunked GCM files, where each chunk is verified on its
+ * own. The most recently opened GCM chunk is kept so sequential reads do not
+ * decrypt it again.
+ */
+public class EncryptedFileChannel implements SeekableByteChannel {
+
+    // Maximum ciphertext decrypted per CTR read
+    private static final int CTR_READ_SIZE = 64 * 1024;
+
+    private final FileChannel file;
+    private final EncryptedFileHeader header;
+    private final SymmetricAlgorithm algorithm;
+    private final String keyText;
+    private final long bodyOffset;
+    private final long size;
+    private final int blockSize;
+
+    private long position;
+
+    // CTR: ciphertext and plaintext buffers
+    private ByteBuffer ctrSource;
+    private ByteBuffer ctrTarget;
+
+    // GCM: the last opened chunk
+    private byte[] sealedChunk;
+    private byte[] plainChunk;
+    private long plainChunkIndex = -1;
+    private int plainChunkLength;
+
+    /**
+     * Opens an encrypted file for random-access reading.
+     *
+     * @param path the encrypted file
+     * @param keyText the Base64 encoded key
+     * @throws IOException if the file cannot be read, has no valid header, or its
+     *                     mode does not allow random access
+     */
+    public EncryptedFileChannel(Path path, String keyText) throws IOException {
+        FileChannel channel = FileChannel.open(path, StandardOpenOption.READ);
+        try {
+            this.file = channel;
+            this.header = EncryptedFileHeader.read(channel);
+            this.algorithm = header.createAlgorithm();
+            this.keyText = keyText;
+            this.bodyOffset = header.getLength();
+            this.size = plaintextSize(header, channel.size() - bodyOffset);
+            this.blockSize = algorithm.getIVLength();
+            checkIV(header, blockSize);
+        } catch (IOException | RuntimeException e) {
+            channel.close();
+            throw e;
+        }
+    }
+
+    /**
+     * The header the decryption settings were taken from
+     */
+    public EncryptedFileHeader getHeader() {
+        return header;
+    }
+
+    @Override
+    public int read(ByteBuffer dst) throws IOException {
+        ensureOpen();
+        if (position >= size) {
+            return -1;
+        }
+        if (!dst.hasRemaining()) {
+            return 0;
+        }
+        int count = header.isChunked() ? readChunked(dst) : readCtr(dst);
+        position += count;
+        return count;
+    }
+
+    @Override
+    public int write(ByteBuffer src) {
+        throw new NonWritableChannelException();
+    }
+
+    @Override
+    public long position() throws IOException {
+        ensureOpen();
+        return position;
+    }
+
+    /**
+     * Sets the plaintext position of the next read. Positions past the end are
+     * allowed and read as end of file.
+     */
+    @Override
+    public SeekableByteChannel position(long newPosition) throws IOException {
+        ensureOpen();
+        if (newPosition < 0) {
+            throw new IllegalArgumentException("Negative position");
+        }
+        position = newPosition;
+        return this;
+    }
+
+    /**
+     * Size of the plaintext in bytes
+     */
+    @Override
+    public long size() throws IOException {
+        ensureOpen();
+        return size;
+    }
+
+    @Override
+    public SeekableByteChannel truncate(long size) {
+        throw new NonWritableChannelException();
+    }
+
+    @Override
+    public boolean isOpen() {
+        return file.isOpen();
+    }
+
+    @Override
+    public void close() throws IOException {
+        file.close();
+    }
+
+    /**
+     * Computes the plaintext size from the length of the ciphertext body
+     */
+    private static long plaintextSize(EncryptedFileHeader header, long bodyLength) throws IOException {
+        if (header.isChunked()) {
+            // openChunk allocates a buffer of one sealed chunk, so never trust a larger size
+            if (header.getChunkSize() > EncryptedFileHeader.MAX_CHUNK_SIZE) {
+                throw new IOException("Invalid chunk size " + header.getChunkSize() + " for " + header);
+            }
+            long sealedSize = header.getChunkSize() + (long) EncryptedFileHeader.TAG_LENGTH;
+            long lastLength = bodyLength % sealedSize;
+            // The last chunk is always short, so it holds at least a tag
+            if (lastLength < EncryptedFileHeader.TAG_LENGTH) {
+                throw new IOException("Encrypted file is truncated");
+            }
+            return bodyLength / sealedSize * header.getChunkSize() + lastLength - EncryptedFileHeader.TAG_LENGTH;
+        }
+        if ("CTR".equals(header.getMode()) && "NoPadding".equals(header.getPadding())) {
+            return bodyLength;
+        }
+        throw new IOException("Random access is not supported for " + header);
+    }
+
+    /**
+     * Rejects headers whose IV cannot drive the mode: CTR needs a counter block
+     * of the cipher's block size, GCM a nonce to derive the chunk nonces from
+     */
+    private static void checkIV(EncryptedFileHeader header, int blockSize) throws IOException {
+        int ivLength = header.getIV().length;
+        if (header.isChunked() ? ivLength == 0 : ivLength != blockSize) {
+            throw new IOException("Invalid IV length " + ivLength + " for " + header);
+        }
+    }
+
+    private int readCtr(ByteBuffer dst) throws IOException {
+        int skip = (int) (position % blockSize);
+        long start = position - skip;
+        int length = (int) Math.min(Math.min(CTR_READ_SIZE, (long) dst.remaining() + skip), size - start);
+
+        if (ctrSource == null) {
+            ctrSource = ByteBuffer.allocate(CTR_READ_SIZE + blockSize);
+            ctrTarget = ByteBuffer.allocate(CTR_READ_SIZE + blockSize);
+        }
+        ctrSource.clear().limit(length);
+        readFully(ctrSource, bodyOffset + start);
+        ctrSource.flip();
+        ctrTarget.clear();
+
+        byte[] counter = ParallelCtrCipher.counterAt(header.getIV(), start / blockSize);
+        try {
+            algorithm.withCipher(Cipher.DECRYPT_MODE, keyText, "CTR", "NoPadding", counter,
+                cipher -> cipher.doFinal(ctrSource, ctrTarget));
+        } catch (GeneralSecurityException e) {
+            throw new IOException("Decryption failed: " + e.getMessage(), e);
+        }
+
+        ctrTarget.flip().position(skip);
+        int count = ctrTarget.remaining();
+        dst.put(ctrTarget);
+        return count;
+    }
+
+    private int readChunked(ByteBuffer dst) throws IOException {
+        int chunkSize = header.getChunkSize();
+        long index = position / chunkSize;
+        int offset = (int) (position % chunkSize);
+        openChunk(index);
+
+        int count = Math.min(dst.remaining(), plainChunkLength - offset);
+        dst.put(plainChunk, offset, count);
+        return count;
+    }
+
+    /**
+     * Decrypts and verifies the chunk with the given index unless it is already open
+     */
+    private void openChunk(long index) throws IOException {
+        if (index == plainChunkIndex) {
+            return;
+        }
+        int chunkSize = header.getChunkSize();
+        int sealedSize = chunkSize + EncryptedFileHeader.TAG_LENGTH;
+        if (sealedChunk == null) {
+            sealedChunk = new byte[sealedSize];
+            plainChunk = new byte[chunkSize];
+        }
+
+        long lastIndex = size / chunkSize;
+        int sealedLength = index < lastIndex ? sealedSize
+            : (int) (size - lastIndex * chunkSize) + EncryptedFileHeader.TAG_LENGTH;
+        ByteBuffer buffer = ByteBuffer.wrap(sealedChunk, 0, sealedLength);
+        readFully(buffer, bodyOffset + index * sealedSize);
+
+        plainChunkIndex = -1;
+        plainChunkLength = EncryptedFileCipher.processChunk(Cipher.DECRYPT_MODE, algorithm, header, keyText,
+            index, index == lastIndex, sealedChunk, sealedLength, plainChunk);
+        plainChunkIndex = index;
+    }
+
+    private void readFully(ByteBuffer buffer, long filePosition) throws IOException {
+        long start = filePosition - buffer.position();
+        while (buffer.hasRemaining()) {
+            if (file.read(buffer, start + buffer.position()) < 0) {
+                throw new EOFException("Encrypted file is truncated");
+            }
+        }
+    }
+
+    private void ensureOpen() throws IOException {
+        if (!file.isOpen()) {
+            throw new ClosedChannelException();
+        }
+    }
+}
@@ -0,0 +1,343 @@
+package com.enctool.app.algorithm;
+
+import com.enctool.app.util.BouncyCastleSupport;
+import com.enctool.app.util.ProgressTracker;
+
+import javax.crypto.Cipher;
+import javax.crypto.spec.SecretKeySpec;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.security.GeneralSecurityException;
+
+/**
+ * Reads and writes files in the self-describing format of {@link EncryptedFileHeader}.
+ * Decryption needs only the key: algorithm, mode, padding and IV come from the header.
+ * <p>
+ * GCM output is split into independently authenticated chunks so that it can be
+ * streamed and verified piece by piece. Chunk {@code i} is encrypted with the header
+ * IV whose last 8 bytes are XORed with {@code i}, and authenticates the encoded header
+ * followed by one byte that is 1 for the last chunk and 0 otherwise, which detects
+ * reordered, dropped or truncated chunks. Other modes write one cipher stream, using
+ * the parallel CTR or memory-mapped backends where they apply.
+ */
+public class EncryptedFileCipher {
+
+    // Default plaintext bytes per GCM chunk
+    public static final int DEFAULT_CHUNK_SIZE = 64 * 1024;
+
+    private final int chunkSize;
+    private final boolean memoryMapped;
+    private ProgressTracker progress = ProgressTracker.NONE;
+
+    public EncryptedFileCipher() {
+        this(DEFAULT_CHUNK_SIZE, false);
+    }
+
+    /**
+     * @param chunkSize plaintext bytes per GCM chunk
+     * @param memoryMapped whether files are processed through {@link MappedFileCipher}
+     *                     instead of streams where possible
+     */
+    public EncryptedFileCipher(int chunkSize, boolean memoryMapped) {
+        if (chunkSize <= 0 || chunkSize > EncryptedFileHeader.MAX_CHUNK_SIZE) {
+            throw new IllegalArgumentException("Chunk size must be between 1 and " + EncryptedFileHeader.MAX_CHUNK_SIZE);
+        }
+        this.chunkSize = chunkSize;
+        this.memoryMapped = memoryMapped;
+    }
+
+    /**
+     * Reports processed input bytes, header included, to the tracker, which can
+     * also cancel the operation
+     *
+     * @return this cipher
+     */
+    public EncryptedFileCipher withProgress(ProgressTracker progress) {
+        this.progress = progress;
+        return this;
+    }
+
+    /**
+     * Encrypts a file, replacing the output file.
+     *
+     * @return the header written in front of the ciphertext
+     */
+    public EncryptedFileHeader encrypt(SymmetricAlgorithm algorithm, Path input, Path output,
+                                       String keyText, String mode, String padding, String ivText)
+            throws IOException {
+        EncryptedFileHeader header = createHeader(algorithm, mode, padding, ivText);
+        try (FileChannel in = FileChannel.open(input, StandardOpenOption.READ);
+             FileChannel out = FileChannel.open(output, StandardOpenOption.CREATE,
+                 StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+            ByteBuffer encodedHeader = ByteBuffer.wrap(header.getEncoded());
+            while (encodedHeader.hasRemaining()) {
+                out.write(encodedHeader);
+            }
+            long bodyOffset = header.getLength();
+
+            if (header.isChunked()) {
+                encryptChunks(algorithm, header, keyText, Channels.newInputStream(in), Channels.newOutputStream(out));
+            } else if (ParallelCtrCipher.supports(algorithm, mode, padding)) {
+                new ParallelCtrCipher(algorithm).withProgress(progress)
+                    .transform(in, 0, in.size(), out, bodyOffset, keyText, ivText);
+            } else if (memoryMapped) {
+                new MappedFileCipher(algorithm).withProgress(progress).transform(Cipher.ENCRYPT_MODE, in, 0, in.size(),
+                    out, bodyOffset, keyText, mode, padding, ivText);
+            } else {
+                algorithm.encrypt(Channels.newInputStream(in), Channels.newOutputStream(out),
+                    keyText, mode, padding, ivText, progress);
+            }
+        }
+        return header;
+    }
+
+    /**
+     * Decrypts a file written by {@link #encrypt}, replacing the output file.
+     *
+     * @return the header the settings were taken from
+     */
+    public EncryptedFileHeader decrypt(Path input, Path output, String keyText) throws IOException {
+        try (FileChannel in = FileChannel.open(input, StandardOpenOption.READ);
+             FileChannel out = FileChannel.open(output, StandardOpenOption.CREATE,
+                 StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+            EncryptedFileHeader header = EncryptedFileHeader.read(in);
+            progress.advance(header.getLength());
+            SymmetricAlgorithm algorithm = header.createAlgorithm();
+            String mode = header.getMode();
+            String padding = header.getPadding();
+            long bodyOffset = header.getLength();
+            long bodyLength = in.size() - bodyOffset;
+
+            if (header.isChunked()) {
+                decryptChunks(algorithm, header, keyText, Channels.newInputStream(in), Channels.newOutputStream(out));
+            } else if (ParallelCtrCipher.supports(algorithm, mode, padding)) {
+                new ParallelCtrCipher(algorithm).withProgress(progress).transform(in, bodyOffset, bodyLength, out, 0,
+                    keyText, header.getIVText());
+            } else if (memoryMapped) {
+                new MappedFileCipher(algorithm).withProgress(progress).transform(Cipher.DECRYPT_MODE, in,
+                    bodyOffset, bodyLength, out, 0, keyText, mode, padding, header.getIVText());
+            } else {
+                algorithm.decrypt(Channels.newInputStream(in), Channels.newOutputStream(out),
+                    keyText, mode, padding, header.getIVText(), progress);
+            }
+            return header;
+        }
+    }
+
+    /**
+     * Encrypts a stream, writing the header followed by the ciphertext.
+     * Neither stream is closed.
+     *
+     * @return the header written in front of the ciphertext
+     */
+    public EncryptedFileHeader encrypt(SymmetricAlgorithm algorithm, InputStream in, OutputStream out,
+                                       String keyText, String mode, String padding, String ivText)
+            throws IOException {
+        EncryptedFileHeader header = createHeader(algorithm, mode, padding, ivText);
+        out.write(header.getEncoded());
+        if (header.isChunked()) {
+            encryptChunks(algorithm, header, keyText, in, out);
+        } else {
+            algorithm.encrypt(in, out, keyText, mode, padding, ivText, progress);
+        }
+        return header;
+    }
+
+    /**
+     * Decrypts a stream written by {@link #encrypt}. Neither stream is closed.
+     *
+     * @return the header the settings were taken from
+     */
+    public EncryptedFileHeader decrypt(InputStream in, OutputStream out, String keyText) throws IOException {
+        EncryptedFileHeader header = EncryptedFileHeader.read(in);
+        progress.advance(header.getLength());
+        SymmetricAlgorithm algorithm = header.createAlgorithm();
+        if (header.isChunked()) {
+            decryptChunks(algorithm, header, keyText, in, out);
+        } else {
+            algorithm.decrypt(in, out, keyText, header.getMode(), header.getPadding(), header.getIVText(), progress);
+        }
+        return header;
+    }
+
+    /**
+     * Encrypts a stream in chunked GCM with a raw key. Unlike the Base64 key text
+     * methods, the key does not pass through the shared key cache or the cipher
+     * pool, so nothing outside this call keeps it and the caller can wipe its
+     * array afterwards. Neither stream is closed.
+     *
+     * @param key the raw key bytes, which are not modified
+     * @return the header written in front of the ciphertext
+     */
+    public EncryptedFileHeader encrypt(SymmetricAlgorithm algorithm, InputStream in, OutputStream out,
+                                       byte[] key, String ivText) throws IOException {
+        EncryptedFileHeader header = createHeader(algorithm, "GCM", "NoPadding", ivText);
+        out.write(header.getEncoded());
+        encryptChunks(header, rawKeyCipher(algorithm, header, key), in, out);
+        return header;
+    }
+
+    /**
+     * Decrypts a chunked GCM stream with a raw key, see
+     * {@link #encrypt(SymmetricAlgorithm, InputStream, OutputStream, byte[], String)}.
+     * Neither stream is closed.
+     *
+     * @return the header the settings were taken from
+     * @throws IOException also if the stream is not in chunked GCM
+     */
+    public EncryptedFileHeader decrypt(InputStream in, OutputStream out, byte[] key) throws IOException {
+        EncryptedFileHeader header = EncryptedFileHeader.read(in);
+        if (!header.isChunked()) {
+            throw new IOException("Expected a GCM encrypted stream, found " + header.getMode());
+        }
+        progress.advance(header.getLength());
+        decryptChunks(header, rawKeyCipher(header.createAlgorithm(), header, key), in, out);
+        return header;
+    }
+
+    private EncryptedFileHeader createHeader(SymmetricAlgorithm algorithm, String mode, String padding, String ivText) {
+        byte[] iv = algorithm.requiresIV(mode) ? algorithm.decodeIV(ivText) : null;
+        boolean chunked = "GCM".equals(mode);
+        if (chunked && iv == null) {
+            throw new IllegalArgumentException("GCM mode requires an IV");
+        }
+        return EncryptedFileHeader.create(algorithm, mode, padding, iv, chunked ? chunkSize : 0);
+    }
+
+    private void encryptChunks(SymmetricAlgorithm algorithm, EncryptedFileHeader header, String keyText,
+                                      InputStream in, OutputStream out) throws IOException {
+        encryptChunks(header, keyTextCipher(algorithm, header, keyText), in, out);
+    }
+
+    private void encryptChunks(EncryptedFileHeader header, ChunkCipher chunkCipher,
+                               InputStream in, OutputStream out) throws IOException {
+        int size = header.getChunkSize();
+        byte[] plain = new byte[size];
+        byte[] sealed = new byte[size + EncryptedFileHeader.TAG_LENGTH];
+
+        for (long index = 0; ; index++) {
+            int length = in.readNBytes(plain, 0, size);
+            // A short (possibly empty) chunk is always the last one
+            boolean last = length < size;
+            int sealedLength = processChunk(Cipher.ENCRYPT_MODE, chunkCipher, header, index, last,
+                plain, length, sealed);
+            out.write(sealed, 0, sealedLength);
+            progress.advance(length);
+            if (last) {
+                break;
+            }
+        }
+        out.flush();
+    }
+
+    private void decryptChunks(SymmetricAlgorithm algorithm, EncryptedFileHeader header, String keyText,
+                                      InputStream in, OutputStream out) throws IOException {
+        decryptChunks(header, keyTextCipher(algorithm, header, keyText), in, out);
+    }
+
+    private void decryptChunks(EncryptedFileHeader header, ChunkCipher chunkCipher,
+                               InputStream in, OutputStream out) throws IOException {
+        int size = header.getChunkSize();
+        byte[] sealed = new byte[size + EncryptedFileHeader.TAG_LENGTH];
+        byte[] plain = new byte[size];
+
+        for (long index = 0; ; index++) {
+            int length = in.readNBytes(sealed, 0, sealed.length);
+            if (length < EncryptedFileHeader.TAG_LENGTH) {
+                throw new IOException("Encrypted file is truncated");
+            }
+            boolean last = length < sealed.length;
+            int plainLength = processChunk(Cipher.DECRYPT_MODE, chunkCipher, header, index, last,
+                sealed, length, plain);
+            out.write(plain, 0, plainLength);
+            progress.advance(length);
+            if (last) {
+                break;
+            }
+        }
+        out.flush();
+    }
+
+    /**
+     * Seals or opens one GCM chunk.
+     *
+     * @return the number of bytes written to the output array
+     */
+    static int processChunk(int opmode, SymmetricAlgorithm algorithm, EncryptedFileHeader header, String keyText,
+                            long index, boolean last, byte[] input, int length, byte[] output) throws IOException {
+        return processChunk(opmode, keyTextCipher(algorithm, header, keyText), header, index, last,
+            input, length, output);
+    }
+
+    private static int processChunk(int opmode, ChunkCipher chunkCipher, EncryptedFileHeader header,
+                                    long index, boolean last, byte[] input, int length, byte[] output)
+            throws IOException {
+        byte[] aad = header.getEncoded();
+        try {
+            return chunkCipher.apply(opmode, chunkNonce(header.getIV(), index), cipher -> {
+                cipher.updateAAD(aad);
+                cipher.updateAAD(new byte[] {(byte) (last ? 1 : 0)});
+                return cipher.doFinal(input, 0, length, output, 0);
+            });
+        } catch (GeneralSecurityException e) {
+            throw new IOException((opmode == Cipher.ENCRYPT_MODE ? "Encryption" : "Decryption")
+                + " of chunk " + index + " failed: " + e.getMessage(), e);
+        }
+    }
+
+    /**
+     * Source of the cipher a chunk is sealed or opened with
+     */
+    @FunctionalInterface
+    private interface ChunkCipher {
+        int apply(int opmode, byte[] nonce, CipherPool.CipherOperation<Integer> operation)
+            throws GeneralSecurityException, IOException;
+    }
+
+    /**
+     * Ciphers for a Base64 key text, taken from the shared key cache and cipher pool
+     */
+    private static ChunkCipher keyTextCipher(SymmetricAlgorithm algorithm, EncryptedFileHeader header,
+                                             String keyText) {
+        return (opmode, nonce, operation) ->
+            algorithm.withCipher(opmode, keyText, header.getMode(), header.getPadding(), nonce, operation);
+    }
+
+    /**
+     * One cipher of its own for a raw key, re-initialized with the nonce of every chunk
+     */
+    private static ChunkCipher rawKeyCipher(SymmetricAlgorithm algorithm, EncryptedFileHeader header, byte[] key)
+            throws IOException {
+        String transformation = algorithm.getAlgorithmName() + "/" + header.getMode() + "/" + header.getPadding();
+        String provider = algorithm.getProviderName();
+        Cipher cipher;
+        try {
+            cipher = provider == null ? BouncyCastleSupport.getCipher(transformation)
+                : Cipher.getInstance(transformation, provider);
+        } catch (GeneralSecurityException e) {
+            throw new IOException("Cipher " + transformation + " is not available: " + e.getMessage(), e);
+        }
+        SecretKeySpec secretKey = new SecretKeySpec(key, algorithm.getAlgorithmName());
+        return (opmode, nonce, operation) -> {
+            cipher.init(opmode, secretKey, algorithm.createParameterSpec(header.getMode(), nonce));
+            return operation.apply(cipher);
+        };
+    }
+
+    /**
+     * Returns the nonce of a chunk: the IV with the chunk index XORed into its last 8 bytes
+     */
+    static byte[] chunkNonce(byte[] iv, long index) {
+        byte[] nonce = iv.clone();
+        for (int i = 0; i < Long.BYTES && i < nonce.length; i++) {
+            nonce[nonce.length - 1 - i] ^= (byte) (index >>> (8 * i));
+        }
+        return nonce;
+    }
+}
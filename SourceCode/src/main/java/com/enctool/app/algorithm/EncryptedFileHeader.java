@@ -0,0 +1,260 @@
+package com.enctool.app.algorithm;
+
+import com.enctool.app.util.CodecUtils;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+
+/**
+ * Header of the self-describing encrypted file format.
+ * <p>
+ * All numbers are big-endian:
+ * <pre>
+ *   magic       4 bytes  "ENCT"
+ *   version     1 byte   1
+ *   algorithm   1 byte   1=AES 2=DES 3=DESede 4=Blowfish 5=ARCFOUR 6=Twofish
+ *   mode        1 byte length + ASCII, e.g. "CBC"
+ *   padding     1 byte length + ASCII, e.g. "PKCS5Padding"
+ *   iv          1 byte length + IV bytes (length 0 if the mode takes no IV)
+ *   chunk size  4 bytes  0 for a single cipher stream, else plaintext bytes per chunk,
+ *                        at most {@link #MAX_CHUNK_SIZE}
+ * </pre>
+ * The ciphertext follows the header directly. For a chunk size of 0 it is the raw
+ * output of one cipher over the whole file. Otherwise (GCM) it is a sequence of chunks, each
+ * holding up to chunk size bytes of ciphertext followed by a 16-byte tag; every chunk
+ * but the last is full, and the last one (possibly empty) marks the end of the file.
+ * See {@link EncryptedFileCipher} for how chunks are sealed.
+ */
+public final class EncryptedFileHeader {
+
+    static final byte[] MAGIC = {'E', 'N', 'C', 'T'};
+    static final int VERSION = 1;
+
+    // Length of the authentication tag after each chunk
+    public static final int TAG_LENGTH = 16;
+
+    // Largest chunk size accepted; readers allocate a buffer of one chunk
+    public static final int MAX_CHUNK_SIZE = 64 * 1024 * 1024;
+
+    // Algorithm names in id order; the id is the index plus one
+    private static final String[] ALGORITHM_NAMES = {"AES", "DES", "DESede", "Blowfish", "ARCFOUR", "Twofish"};
+
+    private final int algorithmId;
+    private final String mode;
+    private final String padding;
+    private final byte[] iv;
+    private final int chunkSize;
+    private final byte[] encoded;
+
+    private EncryptedFileHeader(int algorithmId, String mode, String padding, byte[] iv, int chunkSize) {
+        if (mode.length() > 255 || padding.length() > 255 || iv.length > 255) {
+            throw new IllegalArgumentException("Header field too long");
+        }
+        if (chunkSize < 0 || chunkSize > MAX_CHUNK_SIZE) {
+            throw new IllegalArgumentException("Chunk size must be between 0 and " + MAX_CHUNK_SIZE);
+        }
+        this.algorithmId = algorithmId;
+        this.mode = mode;
+        this.padding = padding;
+        this.iv = iv;
+        this.chunkSize = chunkSize;
+        this.encoded = encode();
+    }
+
+    /**
+     * Creates the header for encrypting with the given settings.
+     *
+     * @param algorithm the algorithm used
+     * @param mode the cipher mode
+     * @param padding the padding scheme
+     * @param iv the IV bytes, or null if the mode takes none
+     * @param chunkSize plaintext bytes per authenticated chunk, or 0 for a single stream
+     */
+    public static EncryptedFileHeader create(SymmetricAlgorithm algorithm, String mode, String padding,
+                                             byte[] iv, int chunkSize) {
+        int id = Arrays.asList(ALGORITHM_NAMES).indexOf(algorithm.getAlgorithmName()) + 1;
+        if (id == 0) {
+            throw new IllegalArgumentException("Unsupported algorithm: " + algorithm.getAlgorithmName());
+        }
+        return new EncryptedFileHeader(id, mode, padding, iv == null ? new byte[0] : iv.clone(), chunkSize);
+    }
+
+    /**
+     * Reads a header from the stream, leaving the stream positioned at the ciphertext
+     */
+    public static EncryptedFileHeader read(InputStream in) throws IOException {
+        DataInputStream data = new DataInputStream(in);
+        try {
+            byte[] magic = new byte[MAGIC.length];
+            data.readFully(magic);
+            if (!Arrays.equals(magic, MAGIC)) {
+                throw new IOException("Not an encrypted file (missing header)");
+            }
+            int version = data.readUnsignedByte();
+            if (version != VERSION) {
+                throw new IOException("Unsupported encrypted file version: " + version);
+            }
+            int algorithmId = data.readUnsignedByte();
+            if (algorithmId < 1 || algorithmId > ALGORITHM_NAMES.length) {
+                throw new IOException("Unknown algorithm id: " + algorithmId);
+            }
+            String mode = new String(readField(data), StandardCharsets.US_ASCII);
+            String padding = new String(readField(data), StandardCharsets.US_ASCII);
+            byte[] iv = readField(data);
+            int chunkSize = data.readInt();
+            // Checked here, since the chunk buffers are allocated from this untrusted value
+            if (chunkSize < 0 || chunkSize > MAX_CHUNK_SIZE) {
+                throw new IOException("Invalid chunk size: " + chunkSize);
+            }
+            return new EncryptedFileHeader(algorithmId, mode, padding, iv, chunkSize);
+        } catch (EOFException e) {
+            throw new IOException("Not an encrypted file (truncated header)", e);
+        }
+    }
+
+    /**
+     * Reads the header at the start of a file channel and leaves the
+     * channel positioned at the ciphertext
+     */
+    public static EncryptedFileHeader read(FileChannel channel) throws IOException {
+        channel.position(0);
+        return read(Channels.newInputStream(channel));
+    }
+
+    /**
+     * Checks whether a file starts with the header magic
+     */
+    public static boolean isEncryptedFile(Path file) throws IOException {
+        if (!Files.isRegularFile(file)) {
+            return false;
+        }
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            ByteBuffer magic = ByteBuffer.allocate(MAGIC.length);
+            while (magic.hasRemaining() && channel.read(magic) > 0) {
+                // keep reading until the magic is complete or the file ends
+            }
+            return !magic.hasRemaining() && Arrays.equals(magic.array(), MAGIC);
+        }
+    }
+
+    /**
+     * Creates an instance of the algorithm named in the header
+     */
+    public SymmetricAlgorithm createAlgorithm() {
+        switch (getAlgorithmName()) {
+            case "AES":
+                return new AESAlgorithm();
+            case "DES":
+                return new DESAlgorithm();
+            case "DESede":
+                return new TripleDESAlgorithm();
+            case "Blowfish":
+                return new BlowfishAlgorithm();
+            case "ARCFOUR":
+                return new RC4Algorithm();
+            default:
+                return new TwofishAlgorithm();
+        }
+    }
+
+    /**
+     * JCE name of the algorithm
+     */
+    public String getAlgorithmName() {
+        return ALGORITHM_NAMES[algorithmId - 1];
+    }
+
+    public String getMode() {
+        return mode;
+    }
+
+    public String getPadding() {
+        return padding;
+    }
+
+    /**
+     * IV bytes, empty if the mode takes no IV
+     */
+    public byte[] getIV() {
+        return iv.clone();
+    }
+
+    /**
+     * IV as Base64 text, or null if the mode takes no IV
+     */
+    public String getIVText() {
+        return iv.length == 0 ? null : CodecUtils.toBase64(iv);
+    }
+
+    /**
+     * Plaintext bytes per chunk, 0 if the ciphertext is a single stream
+     */
+    public int getChunkSize() {
+        return chunkSize;
+    }
+
+    public boolean isChunked() {
+        return chunkSize > 0;
+    }
+
+    /**
+     * Length of the encoded header in bytes
+     */
+    public int getLength() {
+        return encoded.length;
+    }
+
+    /**
+     * The encoded header, as written in front of the ciphertext
+     */
+    public byte[] getEncoded() {
+        return encoded.clone();
+    }
+
+    @Override
+    public String toString() {
+        return getAlgorithmName() + "/" + mode + "/" + padding
+            + (isChunked() ? " in " + chunkSize + "-byte chunks" : "");
+    }
+
+    private byte[] encode() {
+        try {
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+            DataOutputStream data = new DataOutputStream(bytes);
+            data.write(MAGIC);
+            data.writeByte(VERSION);
+            data.writeByte(algorithmId);
+            writeField(data, mode.getBytes(StandardCharsets.US_ASCII));
+            writeField(data, padding.getBytes(StandardCharsets.US_ASCII));
+            writeField(data, iv);
+            data.writeInt(chunkSize);
+            return bytes.toByteArray();
+        } catch (IOException e) {
+            // Cannot happen with an in-memory stream
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static void writeField(DataOutputStream data, byte[] field) throws IOException {
+        data.writeByte(field.length);
+        data.write(field);
+    }
+
+    private static byte[] readField(DataInputStream data) throws IOException {
+        byte[] field = new byte[data.readUnsignedByte()];
+        data.readFully(field);
+        return field;
+    }
+}
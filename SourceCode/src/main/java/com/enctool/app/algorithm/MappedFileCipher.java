@@ -0,0 +1,243 @@
+package com.enctool.app.algorithm;
+
+import com.enctool.app.util.ProgressTracker;
+
+import javax.crypto.Cipher;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.security.GeneralSecurityException;
+
+/**
+ * File encryption backend built on memory-mapped I/O.
+ * The input file is mapped in windows and fed straight to
+ * {@code Cipher.update(ByteBuffer, ByteBuffer)}; the result goes into a direct
+ * buffer that is written with a single channel write, so no file data passes
+ * through the Java heap.
+ * <p>
+ * The output is written from a direct buffer rather than a writable mapping:
+ * padded decryption only learns its final length in doFinal, and on Windows a
+ * mapped file cannot be truncated until the mapping has been garbage collected.
+ * <p>
+ * GCM is passed through the heap buffers of the streaming path instead: its
+ * decryption releases all plaintext only in doFinal, after checking the tag,
+ * so the direct output buffer would have to be as large as the file.
+ */
+public class MappedFileCipher {
+
+    // Default size of each mapped input window
+    public static final int DEFAULT_WINDOW_SIZE = 64 * 1024 * 1024;
+
+    // Amount of input handed to the cipher per update call
+    private static final int UPDATE_SIZE = 1024 * 1024;
+
+    private final SymmetricAlgorithm algorithm;
+    private final int windowSize;
+    private ProgressTracker progress = ProgressTracker.NONE;
+
+    public MappedFileCipher(SymmetricAlgorithm algorithm) {
+        this(algorithm, DEFAULT_WINDOW_SIZE);
+    }
+
+    /**
+     * @param algorithm the algorithm used for encryption
+     * @param windowSize bytes of the input file mapped at a time
+     */
+    public MappedFileCipher(SymmetricAlgorithm algorithm, int windowSize) {
+        if (windowSize <= 0) {
+            throw new IllegalArgumentException("Window size must be positive");
+        }
+        this.algorithm = algorithm;
+        this.windowSize = windowSize;
+    }
+
+    /**
+     * Reports processed input bytes to the tracker, which can also cancel the operation
+     *
+     * @return this cipher
+     */
+    public MappedFileCipher withProgress(ProgressTracker progress) {
+        this.progress = progress;
+        return this;
+    }
+
+    /**
+     * Encrypts a file into raw binary ciphertext, replacing the output file
+     */
+    public void encrypt(Path input, Path output, String keyText, String mode, String padding, String ivText)
+            throws IOException {
+        transform(Cipher.ENCRYPT_MODE, input, output, keyText, mode, padding, ivText);
+    }
+
+    /**
+     * Decrypts a file of raw binary ciphertext, replacing the output file
+     */
+    public void decrypt(Path input, Path output, String keyText, String mode, String padding, String ivText)
+            throws IOException {
+        transform(Cipher.DECRYPT_MODE, input, output, keyText, mode, padding, ivText);
+    }
+
+    /**
+     * Encrypts or decrypts a region of one channel and writes the result to another
+     * channel starting at the given position.
+     *
+     * @param opmode Cipher.ENCRYPT_MODE or Cipher.DECRYPT_MODE
+     * @param input the channel to map
+     * @param inputOffset position of the first byte to process
+     * @param length number of bytes to process
+     * @param output the channel to write
+     * @param outputOffset position the first result byte is written to
+     * @return the number of bytes written
+     */
+    public long transform(int opmode, FileChannel input, long inputOffset, long length,
+                          FileChannel output, long outputOffset,
+                          String keyText, String mode, String padding, String ivText) throws IOException {
+        try {
+            if ("GCM".equals(mode)) {
+                return algorithm.withCipher(opmode, keyText, mode, padding, ivText,
+                    cipher -> processStreaming(cipher, input, inputOffset, length, output, outputOffset));
+            }
+            return algorithm.withCipher(opmode, keyText, mode, padding, ivText,
+                cipher -> process(cipher, input, inputOffset, length, output, outputOffset));
+        } catch (GeneralSecurityException e) {
+            String operation = opmode == Cipher.ENCRYPT_MODE ? "Encryption" : "Decryption";
+            throw new IOException(operation + " failed: " + e.getMessage(), e);
+        }
+    }
+
+    private void transform(int opmode, Path input, Path output,
+                           String keyText, String mode, String padding, String ivText) throws IOException {
+        try (FileChannel in = FileChannel.open(input, StandardOpenOption.READ);
+             FileChannel out = FileChannel.open(output, StandardOpenOption.CREATE,
+                 StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+            transform(opmode, in, 0, in.size(), out, 0, keyText, mode, padding, ivText);
+        }
+    }
+
+    private long process(Cipher cipher, FileChannel input, long inputOffset, long length,
+                         FileChannel output, long outputOffset) throws IOException, GeneralSecurityException {
+        ByteBuffer target = ByteBuffer.allocateDirect(cipher.getOutputSize(UPDATE_SIZE));
+        long written = 0;
+
+        for (long done = 0; done < length; ) {
+            int windowLength = (int) Math.min(windowSize, length - done);
+            MappedByteBuffer window = input.map(FileChannel.MapMode.READ_ONLY, inputOffset + done, windowLength);
+
+            while (window.hasRemaining()) {
+                int chunk = Math.min(UPDATE_SIZE, window.remaining());
+                ByteBuffer slice = window.slice();
+                slice.limit(chunk);
+                window.position(window.position() + chunk);
+
+                target = ensureCapacity(target, cipher.getOutputSize(chunk));
+                cipher.update(slice, target);
+                written += drain(target, output, outputOffset + written);
+                progress.advance(chunk);
+            }
+            done += windowLength;
+        }
+
+        target = ensureCapacity(target, cipher.getOutputSize(0));
+        cipher.doFinal(ByteBuffer.allocate(0), target);
+        written += drain(target, output, outputOffset + written);
+        return written;
+    }
+
+    private long processStreaming(Cipher cipher, FileChannel input, long inputOffset, long length,
+                                  FileChannel output, long outputOffset) throws IOException, GeneralSecurityException {
+        RegionOutputStream out = new RegionOutputStream(output, outputOffset);
+        SymmetricAlgorithm.transform(cipher, new RegionInputStream(input, inputOffset, length), out, progress);
+        return out.position - outputOffset;
+    }
+
+    private static ByteBuffer ensureCapacity(ByteBuffer buffer, int size) {
+        return size > buffer.capacity() ? ByteBuffer.allocateDirect(size) : buffer;
+    }
+
+    /**
+     * Writes the buffered result at the given position and clears the buffer
+     */
+    private static int drain(ByteBuffer buffer, FileChannel output, long position) throws IOException {
+        buffer.flip();
+        int count = buffer.remaining();
+        while (buffer.hasRemaining()) {
+            output.write(buffer, position + (count - buffer.remaining()));
+        }
+        buffer.clear();
+        return count;
+    }
+
+    /**
+     * Reads a region of a channel with positional reads, leaving the channel position alone
+     */
+    private static final class RegionInputStream extends InputStream {
+        private final FileChannel channel;
+        private long position;
+        private final long end;
+
+        RegionInputStream(FileChannel channel, long offset, long length) {
+            this.channel = channel;
+            this.position = offset;
+            this.end = offset + length;
+        }
+
+        @Override
+        public int read() throws IOException {
+            byte[] single = new byte[1];
+            return read(single, 0, 1) == -1 ? -1 : single[0] & 0xFF;
+        }
+
+        @Override
+        public int read(byte[] buffer, int offset, int length) throws IOException {
+            if (position >= end) {
+                return -1;
+            }
+            if (length == 0) {
+                return 0;
+            }
+            ByteBuffer target = ByteBuffer.wrap(buffer, offset, (int) Math.min(length, end - position));
+            int count = channel.read(target, position);
+            if (count > 0) {
+                position += count;
+            }
+            return count;
+        }
+    }
+
+    /**
+     * Writes to a channel from a position on with positional writes. Large
+     * arrays are written in slices, since the channel copies each write
+     * through a temporary direct buffer of the same size.
+     */
+    private static final class RegionOutputStream extends OutputStream {
+        private final FileChannel channel;
+        private long position;
+
+        RegionOutputStream(FileChannel channel, long offset) {
+            this.channel = channel;
+            this.position = offset;
+        }
+
+        @Override
+        public void write(int b) throws IOException {
+            write(new byte[] {(byte) b}, 0, 1);
+        }
+
+        @Override
+        public void write(byte[] buffer, int offset, int length) throws IOException {
+            for (int done = 0; done < length; ) {
+                ByteBuffer source = ByteBuffer.wrap(buffer, offset + done, Math.min(UPDATE_SIZE, length - done));
+                while (source.hasRemaining()) {
+                    int count = channel.write(source, position);
+                    position += count;
+                    done += count;
+                }
+            }
+        }
+    }
+}
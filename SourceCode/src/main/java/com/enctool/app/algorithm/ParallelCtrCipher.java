@@ -0,0 +1,240 @@
+package com.enctool.app.algorithm;
+
+import com.enctool.app.util.ProgressTracker;
+
+import javax.crypto.Cipher;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.security.GeneralSecurityException;
+import java.util.Arrays;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * Multi-threaded CTR mode file encryption.
+ * In CTR mode every block is encrypted independently with counter IV + block index,
+ * so a file can be cut into segments that are processed on a ForkJoinPool, each
+ * starting from its own counter value and writing to its own offset in the output.
+ * The result is byte-for-byte identical to streaming the file through a single
+ * CTR cipher. Encryption and decryption are the same operation.
+ */
+public class ParallelCtrCipher {
+
+    // Default amount of data handled by one task
+    public static final int DEFAULT_SEGMENT_SIZE = 1024 * 1024;
+
+    private static final String MODE = "CTR";
+    private static final String PADDING = "NoPadding";
+    private static final int BLOCK_SIZE = 16;
+
+    // Source and target buffers shared by all instances; each thread keeps its largest pair
+    private static final ThreadLocal<ByteBuffer[]> BUFFERS = new ThreadLocal<>();
+
+    private final SymmetricAlgorithm algorithm;
+    private final ForkJoinPool pool;
+    private final int segmentSize;
+    private ProgressTracker progress = ProgressTracker.NONE;
+
+    public ParallelCtrCipher(SymmetricAlgorithm algorithm) {
+        this(algorithm, ForkJoinPool.commonPool(), DEFAULT_SEGMENT_SIZE);
+    }
+
+    /**
+     * @param algorithm the algorithm to run in CTR mode
+     * @param pool the pool the segments are processed on
+     * @param segmentSize bytes per task, a multiple of the 16-byte block size
+     */
+    public ParallelCtrCipher(SymmetricAlgorithm algorithm, ForkJoinPool pool, int segmentSize) {
+        if (!supports(algorithm, MODE, PADDING)) {
+            throw new IllegalArgumentException(algorithm.getAlgorithmName() + " does not support parallel CTR mode");
+        }
+        if (segmentSize <= 0 || segmentSize % BLOCK_SIZE != 0) {
+            throw new IllegalArgumentException("Segment size must be a positive multiple of " + BLOCK_SIZE);
+        }
+        this.algorithm = algorithm;
+        this.pool = pool;
+        this.segmentSize = segmentSize;
+    }
+
+    /**
+     * Reports processed input bytes to the tracker, which can also cancel the operation
+     *
+     * @return this cipher
+     */
+    public ParallelCtrCipher withProgress(ProgressTracker progress) {
+        this.progress = progress;
+        return this;
+    }
+
+    /**
+     * Checks whether the given settings can be processed in parallel: the algorithm must
+     * offer CTR with a 128-bit block and no padding may be applied, so that the
+     * ciphertext has exactly the length of the plaintext.
+     */
+    public static boolean supports(SymmetricAlgorithm algorithm, String mode, String padding) {
+        return MODE.equals(mode) && PADDING.equals(padding)
+            && algorithm.getIVLength() == BLOCK_SIZE
+            && Arrays.asList(algorithm.getSupportedModes()).contains(MODE);
+    }
+
+    /**
+     * Encrypts or decrypts a whole file, replacing the output file.
+     *
+     * @param input the file to read
+     * @param output the file to write
+     * @param keyText the Base64 encoded key
+     * @param ivText the Base64 encoded initial counter block
+     */
+    public void transform(Path input, Path output, String keyText, String ivText) throws IOException {
+        try (FileChannel in = FileChannel.open(input, StandardOpenOption.READ);
+             FileChannel out = FileChannel.open(output, StandardOpenOption.CREATE,
+                 StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+            transform(in, 0, in.size(), out, 0, keyText, ivText);
+        }
+    }
+
+    /**
+     * Encrypts or decrypts a region of one channel into a region of another.
+     * The counter starts at the IV for the first byte of the input region.
+     *
+     * @param input the channel to read
+     * @param inputOffset position of the first byte to process
+     * @param length number of bytes to process
+     * @param output the channel to write
+     * @param outputOffset position the first result byte is written to
+     * @param keyText the Base64 encoded key
+     * @param ivText the Base64 encoded initial counter block
+     */
+    public void transform(FileChannel input, long inputOffset, long length,
+                          FileChannel output, long outputOffset,
+                          String keyText, String ivText) throws IOException {
+        byte[] iv = algorithm.decodeIV(ivText);
+        if (iv == null) {
+            throw new IOException("CTR mode requires an IV");
+        }
+        long segments = (length + segmentSize - 1) / segmentSize;
+        if (segments == 0) {
+            return;
+        }
+
+        SegmentRange task = new SegmentRange(input, inputOffset, length, output, outputOffset,
+            keyText, iv, 0, segments);
+        try {
+            pool.invoke(task);
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+    }
+
+    /**
+     * Returns the counter block for the given block index: the IV plus the index,
+     * as a big-endian number over the whole block.
+     */
+    static byte[] counterAt(byte[] iv, long blockIndex) {
+        byte[] counter = iv.clone();
+        long carry = blockIndex;
+        for (int i = counter.length - 1; i >= 0 && carry != 0; i--) {
+            long sum = (counter[i] & 0xFF) + (carry & 0xFF);
+            counter[i] = (byte) sum;
+            carry = (carry >>> 8) + (sum >>> 8);
+        }
+        return counter;
+    }
+
+    /**
+     * Returns the source and target buffers of the current thread, at least {@code size} bytes each
+     */
+    private static ByteBuffer[] buffers(int size) {
+        ByteBuffer[] buffer = BUFFERS.get();
+        if (buffer == null || buffer[0].capacity() < size) {
+            buffer = new ByteBuffer[] {ByteBuffer.allocate(size), ByteBuffer.allocate(size)};
+            BUFFERS.set(buffer);
+        }
+        return buffer;
+    }
+
+    private void processSegment(FileChannel input, long inputPosition, int length,
+                                FileChannel output, long outputPosition,
+                                String keyText, byte[] counter) throws IOException {
+        ByteBuffer[] buffer = buffers(length);
+        ByteBuffer source = buffer[0];
+        ByteBuffer target = buffer[1];
+
+        source.clear().limit(length);
+        while (source.hasRemaining()) {
+            if (input.read(source, inputPosition + source.position()) < 0) {
+                throw new EOFException("Input ended before the expected length");
+            }
+        }
+        source.flip();
+        target.clear();
+
+        try {
+            algorithm.withCipher(Cipher.ENCRYPT_MODE, keyText, MODE, PADDING, counter,
+                cipher -> cipher.doFinal(source, target));
+        } catch (GeneralSecurityException e) {
+            throw new IOException("CTR processing failed: " + e.getMessage(), e);
+        }
+
+        target.flip();
+        while (target.hasRemaining()) {
+            output.write(target, outputPosition + target.position());
+        }
+        progress.advance(length);
+    }
+
+    /**
+     * Processes a range of segments, splitting it in half until one segment is left
+     */
+    private final class SegmentRange extends RecursiveAction {
+        private static final long serialVersionUID = 1L;
+
+        private final transient FileChannel input;
+        private final long inputOffset;
+        private final long length;
+        private final transient FileChannel output;
+        private final long outputOffset;
+        private final String keyText;
+        private final byte[] iv;
+        private final long first;
+        private final long end;
+
+        SegmentRange(FileChannel input, long inputOffset, long length, FileChannel output, long outputOffset,
+                     String keyText, byte[] iv, long first, long end) {
+            this.input = input;
+            this.inputOffset = inputOffset;
+            this.length = length;
+            this.output = output;
+            this.outputOffset = outputOffset;
+            this.keyText = keyText;
+            this.iv = iv;
+            this.first = first;
+            this.end = end;
+        }
+
+        @Override
+        protected void compute() {
+            if (end - first > 1) {
+                long middle = (first + end) >>> 1;
+                invokeAll(new SegmentRange(input, inputOffset, length, output, outputOffset, keyText, iv, first, middle),
+                    new SegmentRange(input, inputOffset, length, output, outputOffset, keyText, iv, middle, end));
+                return;
+            }
+
+            long start = first * segmentSize;
+            int segmentLength = (int) Math.min(segmentSize, length - start);
+            byte[] counter = counterAt(iv, start / BLOCK_SIZE);
+            try {
+                processSegment(input, inputOffset + start, segmentLength,
+                    output, outputOffset + start, keyText, counter);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+    }
+}
@@ -1,5 +1,8 @@
 package com.enctool.app.algorithm;
 
+import java.io.IOException;
+import java.security.GeneralSecurityException;
+
 public class RC4Algorithm extends SymmetricAlgorithm {
     
     @Override
@@ -50,4 +53,13 @@ public class RC4Algorithm extends SymmetricAlgorithm {
         // Force the correct transformation for RC4 regardless of selected mode/padding
         return super.decrypt(encryptedText, keyText, "ECB", "NoPadding", ivText);
     }
+    
+    @Override
+    protected <T> T withCipher(int opmode, String keyText, String mode, String padding, byte[] ivBytes,
+                               CipherPool.CipherOperation<T> operation)
+            throws GeneralSecurityException, IOException {
+        // Force the correct transformation for RC4 regardless of selected mode/padding,
+        // which covers the stream and file backends as well
+        return super.withCipher(opmode, keyText, "ECB", "NoPadding", (byte[]) null, operation);
+    }
 }
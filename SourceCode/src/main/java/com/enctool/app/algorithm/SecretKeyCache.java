@@ -0,0 +1,233 @@
+package com.enctool.app.algorithm;
+
+import com.enctool.app.util.CodecUtils;
+
+import javax.crypto.SecretKey;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Bounded LRU cache of decoded secret keys.
+ * Repeated operations with the same Base64 key text get the same key object back,
+ * which skips the decoding and lets {@link CipherPool} reuse a cipher without
+ * running the key schedule again.
+ * <p>
+ * Entries are found by a SHA-256 digest of the algorithm and key text, so the
+ * cache keeps no copy of the key text itself. Evicted keys have their key
+ * material wiped as soon as no operation is using them any more, and each
+ * thread drops the pooled ciphers initialized with such a key the next time it
+ * uses the CipherPool. The expanded key inside a dropped cipher cannot be wiped
+ * through the JCE API and is left to the garbage collector, as is the key text
+ * held by the caller.
+ */
+public final class SecretKeyCache {
+
+    private final int maxEntries;
+    private final Map<ByteBuffer, CachedSecretKey> keys;
+
+    private static final ThreadLocal<MessageDigest> DIGESTS = ThreadLocal.withInitial(() -> {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            // Every Java platform provides SHA-256
+            throw new IllegalStateException(e);
+        }
+    });
+
+    /**
+     * Work performed with a cached key
+     */
+    @FunctionalInterface
+    public interface KeyOperation<T> {
+        T apply(SecretKey key) throws GeneralSecurityException, IOException;
+    }
+
+    /**
+     * Creates a cache holding at most the given number of keys.
+     *
+     * @param maxEntries the maximum number of cached keys
+     */
+    public SecretKeyCache(int maxEntries) {
+        if (maxEntries <= 0) {
+            throw new IllegalArgumentException("Cache size must be positive");
+        }
+        this.maxEntries = maxEntries;
+        this.keys = new LinkedHashMap<ByteBuffer, CachedSecretKey>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<ByteBuffer, CachedSecretKey> eldest) {
+                if (size() > SecretKeyCache.this.maxEntries) {
+                    eldest.getValue().evict();
+                    return true;
+                }
+                return false;
+            }
+        };
+    }
+
+    /**
+     * Runs an operation with the key for the given algorithm and Base64 key text.
+     * The key is decoded on first use and taken from the cache afterwards.
+     * It is guaranteed not to be wiped while the operation runs.
+     *
+     * @param algorithm the JCE algorithm name
+     * @param keyText the Base64 encoded key
+     * @param operation the work to perform with the key
+     * @return the result of the operation
+     */
+    public <T> T apply(String algorithm, String keyText, KeyOperation<T> operation)
+            throws GeneralSecurityException, IOException {
+        CachedSecretKey key = acquire(algorithm, keyText);
+        try {
+            return operation.apply(key);
+        } finally {
+            release(key);
+        }
+    }
+
+    /**
+     * Number of keys currently cached
+     */
+    public synchronized int size() {
+        return keys.size();
+    }
+
+    /**
+     * Removes all keys from the cache, wiping those not currently in use
+     */
+    public synchronized void clear() {
+        for (CachedSecretKey key : keys.values()) {
+            key.evict();
+        }
+        keys.clear();
+    }
+
+    private CachedSecretKey acquire(String algorithm, String keyText) {
+        return acquire(algorithm, keyText, cacheKey(algorithm, keyText));
+    }
+
+    private synchronized CachedSecretKey acquire(String algorithm, String keyText, ByteBuffer cacheKey) {
+        CachedSecretKey key = keys.get(cacheKey);
+        if (key == null) {
+            key = new CachedSecretKey(CodecUtils.fromBase64(keyText), algorithm);
+            keys.put(cacheKey, key);
+        }
+        key.leases++;
+        return key;
+    }
+
+    /**
+     * SHA-256 of the algorithm name and the key text
+     */
+    private static ByteBuffer cacheKey(String algorithm, String keyText) {
+        MessageDigest digest = DIGESTS.get();
+        digest.update(algorithm.getBytes(StandardCharsets.UTF_8));
+        digest.update((byte) 0);
+        byte[] keyBytes = keyText.getBytes(StandardCharsets.UTF_8);
+        digest.update(keyBytes);
+        Arrays.fill(keyBytes, (byte) 0);
+        return ByteBuffer.wrap(digest.digest());
+    }
+
+    private synchronized void release(CachedSecretKey key) {
+        key.leases--;
+        if (key.evicted && key.leases == 0) {
+            key.destroy();
+        }
+    }
+
+    /**
+     * Raw secret key whose key material can be wiped
+     */
+    private static final class CachedSecretKey implements SecretKey {
+        private static final long serialVersionUID = 1L;
+
+        private final byte[] keyBytes;
+        private final String algorithm;
+        private final int hashCode;
+        private volatile boolean destroyed;
+
+        // Guarded by the owning cache
+        private transient int leases;
+        private transient boolean evicted;
+
+        CachedSecretKey(byte[] keyBytes, String algorithm) {
+            if (keyBytes.length == 0) {
+                throw new IllegalArgumentException("Empty key");
+            }
+            this.keyBytes = keyBytes;
+            this.algorithm = algorithm;
+            this.hashCode = Arrays.hashCode(keyBytes) ^ algorithm.toLowerCase().hashCode();
+        }
+
+        void evict() {
+            evicted = true;
+            if (leases == 0) {
+                destroy();
+            }
+        }
+
+        @Override
+        public String getAlgorithm() {
+            return algorithm;
+        }
+
+        @Override
+        public String getFormat() {
+            return "RAW";
+        }
+
+        @Override
+        public byte[] getEncoded() {
+            if (destroyed) {
+                throw new IllegalStateException("Key has been destroyed");
+            }
+            return keyBytes.clone();
+        }
+
+        @Override
+        public void destroy() {
+            Arrays.fill(keyBytes, (byte) 0);
+            destroyed = true;
+            CipherPool.keyDestroyed();
+        }
+
+        @Override
+        public boolean isDestroyed() {
+            return destroyed;
+        }
+
+        @Override
+        public int hashCode() {
+            return hashCode;
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+            if (this == obj) {
+                return true;
+            }
+            if (!(obj instanceof SecretKey) || destroyed) {
+                return false;
+            }
+            SecretKey other = (SecretKey) obj;
+            if (other.isDestroyed() || !algorithm.equalsIgnoreCase(other.getAlgorithm())) {
+                return false;
+            }
+            byte[] otherBytes = other.getEncoded();
+            try {
+                return MessageDigest.isEqual(keyBytes, otherBytes);
+            } finally {
+                if (otherBytes != null) {
+                    Arrays.fill(otherBytes, (byte) 0);
+                }
+            }
+        }
+    }
+}
@@ -1,15 +1,31 @@
 package com.enctool.app.algorithm;
 
+import com.enctool.app.util.CodecUtils;
+import com.enctool.app.util.ProgressTracker;
+
 import javax.crypto.Cipher;
 import javax.crypto.KeyGenerator;
 import javax.crypto.SecretKey;
+import javax.crypto.spec.GCMParameterSpec;
 import javax.crypto.spec.IvParameterSpec;
-import javax.crypto.spec.SecretKeySpec;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.security.GeneralSecurityException;
 import java.security.SecureRandom;
-import java.util.Base64;
+import java.security.spec.AlgorithmParameterSpec;
 
 public abstract class SymmetricAlgorithm {
     
+    // Size of the buffer used when streaming data through a cipher
+    protected static final int STREAM_BUFFER_SIZE = 64 * 1024;
+    
+    // Authentication tag length used for GCM mode
+    protected static final int GCM_TAG_LENGTH_BITS = 128;
+    
+    // Decoded keys shared by all algorithms, so repeated operations skip key setup
+    private static final SecretKeyCache KEY_CACHE = new SecretKeyCache(64);
+    
     protected abstract String getAlgorithmName();
     
     public abstract String[] getSupportedModes();
@@ -27,7 +43,7 @@ public abstract class SymmetricAlgorithm {
         KeyGenerator keyGen = KeyGenerator.getInstance(getAlgorithmName());
         keyGen.init(keySize);
         SecretKey key = keyGen.generateKey();
-        return Base64.getEncoder().encodeToString(key.getEncoded());
+        return CodecUtils.toBase64(key.getEncoded());
     }
     
     public String generateIV() throws Exception {
@@ -36,7 +52,7 @@ public abstract class SymmetricAlgorithm {
         // Generate IV with the appropriate length for the algorithm
         byte[] iv = new byte[getIVLength()];
         secureRandom.nextBytes(iv);
-        return Base64.getEncoder().encodeToString(iv);
+        return CodecUtils.toBase64(iv);
     }
     
     public boolean requiresIV(String mode) {
@@ -59,31 +75,10 @@ public abstract class SymmetricAlgorithm {
     
     public String encrypt(String plainText, String keyText, String mode, String padding, String ivText) {
         try {
-            // Decode the Base64 encoded key
-            byte[] keyBytes = Base64.getDecoder().decode(keyText);
-            SecretKey secretKey = new SecretKeySpec(keyBytes, getAlgorithmName());
-            
-            // Create and initialize cipher with specified mode and padding
-            String transformation = getAlgorithmName() + "/" + mode + "/" + padding;
-            Cipher cipher = Cipher.getInstance(transformation);
-            
-            if (requiresIV(mode) && ivText != null && !ivText.isEmpty()) {
-                // Initialize with IV if mode requires it
-                byte[] ivBytes = Base64.getDecoder().decode(ivText);
-                // Ensure IV is the correct length
-                byte[] properIVBytes = new byte[getIVLength()];
-                System.arraycopy(ivBytes, 0, properIVBytes, 0, Math.min(ivBytes.length, getIVLength()));
-                
-                IvParameterSpec iv = new IvParameterSpec(properIVBytes);
-                cipher.init(Cipher.ENCRYPT_MODE, secretKey, iv);
-            } else {
-                // Otherwise initialize without IV
-                cipher.init(Cipher.ENCRYPT_MODE, secretKey);
-            }
-            
             // Encrypt
-            byte[] encryptedBytes = cipher.doFinal(plainText.getBytes());
-            return Base64.getEncoder().encodeToString(encryptedBytes);
+            byte[] encryptedBytes = withCipher(Cipher.ENCRYPT_MODE, keyText, mode, padding, ivText,
+                cipher -> cipher.doFinal(plainText.getBytes()));
+            return CodecUtils.toBase64(encryptedBytes);
         } catch (Exception e) {
             throw new RuntimeException("Encryption failed: " + e.getMessage(), e);
         }
@@ -91,38 +86,170 @@ public abstract class SymmetricAlgorithm {
     
     public String decrypt(String encryptedText, String keyText, String mode, String padding, String ivText) {
         try {
-            // Decode the Base64 encoded key and encrypted text
-            byte[] keyBytes = Base64.getDecoder().decode(keyText);
-            byte[] encryptedBytes = Base64.getDecoder().decode(encryptedText);
-            
-            SecretKey secretKey = new SecretKeySpec(keyBytes, getAlgorithmName());
-            
-            // Create and initialize cipher with specified mode and padding
-            String transformation = getAlgorithmName() + "/" + mode + "/" + padding;
-            Cipher cipher = Cipher.getInstance(transformation);
-            
-            if (requiresIV(mode) && ivText != null && !ivText.isEmpty()) {
-                // Initialize with IV if mode requires it
-                byte[] ivBytes = Base64.getDecoder().decode(ivText);
-                // Ensure IV is the correct length
-                byte[] properIVBytes = new byte[getIVLength()];
-                System.arraycopy(ivBytes, 0, properIVBytes, 0, Math.min(ivBytes.length, getIVLength()));
-                
-                IvParameterSpec iv = new IvParameterSpec(properIVBytes);
-                cipher.init(Cipher.DECRYPT_MODE, secretKey, iv);
-            } else {
-                // Otherwise initialize without IV
-                cipher.init(Cipher.DECRYPT_MODE, secretKey);
-            }
+            // Decode the Base64 encoded encrypted text
+            byte[] encryptedBytes = CodecUtils.fromBase64(encryptedText);
             
             // Decrypt
-            byte[] decryptedBytes = cipher.doFinal(encryptedBytes);
+            byte[] decryptedBytes = withCipher(Cipher.DECRYPT_MODE, keyText, mode, padding, ivText,
+                cipher -> cipher.doFinal(encryptedBytes));
             return new String(decryptedBytes);
         } catch (Exception e) {
             throw new RuntimeException("Decryption failed: " + e.getMessage(), e);
         }
     }
     
+    /**
+     * Encrypts everything read from the input stream and writes the raw binary
+     * ciphertext to the output stream. Data is processed in fixed-size buffers,
+     * so memory use does not depend on the size of the input.
+     * Neither stream is closed by this method.
+     */
+    public void encrypt(InputStream in, OutputStream out, String keyText, String mode, String padding, String ivText)
+            throws IOException {
+        encrypt(in, out, keyText, mode, padding, ivText, ProgressTracker.NONE);
+    }
+    
+    /**
+     * Same as {@link #encrypt(InputStream, OutputStream, String, String, String, String)},
+     * reporting the bytes read to the tracker, which can also cancel the operation.
+     */
+    public void encrypt(InputStream in, OutputStream out, String keyText, String mode, String padding, String ivText,
+                        ProgressTracker progress) throws IOException {
+        try {
+            withCipher(Cipher.ENCRYPT_MODE, keyText, mode, padding, ivText, cipher -> {
+                transform(cipher, in, out, progress);
+                return null;
+            });
+        } catch (GeneralSecurityException e) {
+            throw new IOException("Encryption failed: " + e.getMessage(), e);
+        }
+    }
+    
+    /**
+     * Decrypts raw binary ciphertext read from the input stream and writes the
+     * plaintext to the output stream, using fixed-size buffers.
+     * Note that AEAD modes such as GCM hold back the plaintext until the
+     * authentication tag at the end of the input has been verified.
+     * Neither stream is closed by this method.
+     */
+    public void decrypt(InputStream in, OutputStream out, String keyText, String mode, String padding, String ivText)
+            throws IOException {
+        decrypt(in, out, keyText, mode, padding, ivText, ProgressTracker.NONE);
+    }
+    
+    /**
+     * Same as {@link #decrypt(InputStream, OutputStream, String, String, String, String)},
+     * reporting the bytes read to the tracker, which can also cancel the operation.
+     */
+    public void decrypt(InputStream in, OutputStream out, String keyText, String mode, String padding, String ivText,
+                        ProgressTracker progress) throws IOException {
+        try {
+            withCipher(Cipher.DECRYPT_MODE, keyText, mode, padding, ivText, cipher -> {
+                transform(cipher, in, out, progress);
+                return null;
+            });
+        } catch (GeneralSecurityException e) {
+            throw new IOException("Decryption failed: " + e.getMessage(), e);
+        }
+    }
+    
+    /**
+     * Name of the JCE provider that implements this algorithm,
+     * or null to use the default provider lookup.
+     */
+    protected String getProviderName() {
+        return null;
+    }
+    
+    /**
+     * Runs an operation with a cipher for the given mode and padding, initialized
+     * with the Base64 encoded key and (when the mode needs one) IV.
+     * Keys come from a shared {@link SecretKeyCache} and ciphers from the
+     * per-thread {@link CipherPool}.
+     */
+    protected <T> T withCipher(int opmode, String keyText, String mode, String padding, String ivText,
+                               CipherPool.CipherOperation<T> operation)
+            throws GeneralSecurityException, IOException {
+        // Initialize with IV if mode requires it
+        byte[] ivBytes = requiresIV(mode) ? decodeIV(ivText) : null;
+        return withCipher(opmode, keyText, mode, padding, ivBytes, operation);
+    }
+    
+    /**
+     * Same as {@link #withCipher(int, String, String, String, String, CipherPool.CipherOperation)}
+     * but with the IV given as raw bytes of the correct length, or null for none.
+     */
+    protected <T> T withCipher(int opmode, String keyText, String mode, String padding, byte[] ivBytes,
+                               CipherPool.CipherOperation<T> operation)
+            throws GeneralSecurityException, IOException {
+        AlgorithmParameterSpec params = ivBytes == null ? null : createParameterSpec(mode, ivBytes);
+        
+        // Get a cipher with specified mode and padding
+        String transformation = getAlgorithmName() + "/" + mode + "/" + padding;
+        return KEY_CACHE.apply(getAlgorithmName(), keyText, secretKey ->
+            CipherPool.execute(transformation, getProviderName(), opmode, secretKey, params, operation));
+    }
+    
+    /**
+     * Drops all cached keys and wipes their key material
+     */
+    public static void clearKeyCache() {
+        KEY_CACHE.clear();
+    }
+    
+    /**
+     * Decodes a Base64 IV and truncates or zero-pads it to the IV length of the algorithm.
+     * Returns null when no IV text is given.
+     */
+    protected byte[] decodeIV(String ivText) {
+        if (ivText == null || ivText.isEmpty()) {
+            return null;
+        }
+        byte[] ivBytes = CodecUtils.fromBase64(ivText);
+        // Ensure IV is the correct length
+        byte[] properIVBytes = new byte[getIVLength()];
+        System.arraycopy(ivBytes, 0, properIVBytes, 0, Math.min(ivBytes.length, getIVLength()));
+        return properIVBytes;
+    }
+    
+    /**
+     * Wraps the IV in the parameter spec expected by the given mode.
+     * GCM needs a GCMParameterSpec; every other mode takes a plain IV.
+     */
+    protected AlgorithmParameterSpec createParameterSpec(String mode, byte[] ivBytes) {
+        if ("GCM".equals(mode)) {
+            return new GCMParameterSpec(GCM_TAG_LENGTH_BITS, ivBytes);
+        }
+        return new IvParameterSpec(ivBytes);
+    }
+    
+    /**
+     * Pumps the input stream through an initialized cipher in fixed-size buffers
+     */
+    static void transform(Cipher cipher, InputStream in, OutputStream out, ProgressTracker progress)
+            throws IOException, GeneralSecurityException {
+        byte[] inBuffer = new byte[STREAM_BUFFER_SIZE];
+        byte[] outBuffer = new byte[cipher.getOutputSize(STREAM_BUFFER_SIZE)];
+        
+        int bytesRead;
+        while ((bytesRead = in.read(inBuffer)) != -1) {
+            outBuffer = ensureCapacity(outBuffer, cipher.getOutputSize(bytesRead));
+            int written = cipher.update(inBuffer, 0, bytesRead, outBuffer, 0);
+            out.write(outBuffer, 0, written);
+            progress.advance(bytesRead);
+        }
+        
+        outBuffer = ensureCapacity(outBuffer, cipher.getOutputSize(0));
+        int written = cipher.doFinal(outBuffer, 0);
+        out.write(outBuffer, 0, written);
+        out.flush();
+    }
+    
+    private static byte[] ensureCapacity(byte[] buffer, int size) {
+        // Doubling, since GCM decryption asks for room for everything buffered so far on every update
+        return size > buffer.length ? new byte[Math.max(size, buffer.length * 2)] : buffer;
+    }
+    
     // For backward compatibility
     public String encrypt(String plainText, String keyText, String mode, String padding) {
         return encrypt(plainText, keyText, mode, padding, null);
@@ -0,0 +1,94 @@
+package com.enctool.app.asymmetric;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+/**
+ * Text format of saved key files: a header line, the Base64 key in lines of
+ * 64 characters, and a footer line. Holds no UI code, so it can be used
+ * without loading Swing.
+ */
+public final class KeyFileFormat {
+
+    private static final int KEY_LINE_LENGTH = 64;
+    private static final String PUBLIC_KEY_HEADER = "----Start public key----";
+    private static final String PUBLIC_KEY_FOOTER = "----End public key----";
+    private static final String PRIVATE_KEY_HEADER = "----Start private key----";
+    private static final String PRIVATE_KEY_FOOTER = "----End private key----";
+
+    private KeyFileFormat() {
+    }
+
+    /**
+     * Formats a key for saving with the required header, formatted content, and footer.
+     *
+     * @param keyContent the raw key content
+     * @param isPublicKey true if this is a public key, false for private key
+     * @return the formatted key
+     */
+    public static String format(String keyContent, boolean isPublicKey) {
+        StringBuilder formatted = new StringBuilder();
+
+        // Add the appropriate header
+        formatted.append(isPublicKey ? PUBLIC_KEY_HEADER : PRIVATE_KEY_HEADER).append("\n");
+
+        // Format the key content with 64 characters per line
+        for (int i = 0; i < keyContent.length(); i += KEY_LINE_LENGTH) {
+            int end = Math.min(i + KEY_LINE_LENGTH, keyContent.length());
+            formatted.append(keyContent, i, end).append("\n");
+        }
+
+        // Add the appropriate footer
+        formatted.append(isPublicKey ? PUBLIC_KEY_FOOTER : PRIVATE_KEY_FOOTER);
+
+        return formatted.toString();
+    }
+
+    /**
+     * Extracts the Base64 key from formatted key text.
+     *
+     * @param reader the key file content
+     * @return the key content without header, footer and line breaks
+     */
+    public static String parse(BufferedReader reader) throws IOException {
+        StringBuilder content = new StringBuilder();
+        String line;
+        boolean isKeyContent = false;
+
+        while ((line = reader.readLine()) != null) {
+            if (line.equals(PUBLIC_KEY_HEADER) || line.equals(PRIVATE_KEY_HEADER)) {
+                isKeyContent = true;
+                continue;
+            }
+
+            if (line.equals(PUBLIC_KEY_FOOTER) || line.equals(PRIVATE_KEY_FOOTER)) {
+                isKeyContent = false;
+                continue;
+            }
+
+            if (isKeyContent) {
+                content.append(line);
+            }
+        }
+        return content.toString();
+    }
+
+    /**
+     * Reads the key from a key file
+     */
+    public static String read(Path file) throws IOException {
+        try (BufferedReader reader = Files.newBufferedReader(file, StandardCharsets.UTF_8)) {
+            return parse(reader);
+        }
+    }
+
+    /**
+     * Writes a key file, replacing an existing one
+     */
+    public static void write(Path file, String keyContent, boolean isPublicKey) throws IOException {
+        Files.write(file, format(keyContent, isPublicKey).getBytes(StandardCharsets.UTF_8));
+    }
+}
@@ -0,0 +1,193 @@
+package com.enctool.app.asymmetric;
+
+import com.enctool.app.algorithm.CipherPool;
+import com.enctool.app.util.BouncyCastleSupport;
+
+import javax.crypto.Cipher;
+import java.security.GeneralSecurityException;
+import java.security.Key;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.RandomAccess;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Runs RSA operations on many small inputs in parallel.
+ * The inputs are split into contiguous slices that are processed on a fixed thread
+ * pool; every worker reuses the parsed key and its own pooled Cipher, and results
+ * are stored by index so the output list has the same order as the input list.
+ * <p>
+ * The pool threads are daemon threads; call {@link #close()} to release them.
+ */
+public class RSABatchProcessor implements AutoCloseable {
+
+    // Same cipher as RSAUtils, so batch and single results are interchangeable
+    private static final String TRANSFORMATION = "RSA";
+
+    // Slices per thread, so a slow slice does not leave the other threads idle
+    private static final int SLICES_PER_THREAD = 4;
+
+    private final int threads;
+    private final ExecutorService executor;
+
+    /**
+     * Creates a processor with one thread per available processor
+     */
+    public RSABatchProcessor() {
+        this(Runtime.getRuntime().availableProcessors());
+    }
+
+    /**
+     * Creates a processor with the given number of threads.
+     *
+     * @param threads the number of worker threads
+     */
+    public RSABatchProcessor(int threads) {
+        if (threads <= 0) {
+            throw new IllegalArgumentException("Thread count must be positive");
+        }
+        AtomicInteger counter = new AtomicInteger();
+        this.threads = threads;
+        this.executor = Executors.newFixedThreadPool(threads, runnable -> {
+            Thread thread = new Thread(runnable, "rsa-batch-" + counter.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    /**
+     * Encrypts each input with a public key.
+     *
+     * @param inputs the data blocks to encrypt
+     * @param publicKeyString the Base64 encoded public key
+     * @return the encrypted blocks, in input order
+     * @throws RuntimeException if any operation fails
+     */
+    public List<byte[]> encryptWithPublicKey(List<byte[]> inputs, String publicKeyString) {
+        return process(inputs, Cipher.ENCRYPT_MODE, publicKey(publicKeyString, "Encryption failed"),
+            "Encryption failed");
+    }
+
+    /**
+     * Decrypts each input with a private key.
+     *
+     * @param inputs the encrypted blocks
+     * @param privateKeyString the Base64 encoded private key
+     * @return the decrypted blocks, in input order
+     * @throws RuntimeException if any operation fails
+     */
+    public List<byte[]> decryptWithPrivateKey(List<byte[]> inputs, String privateKeyString) {
+        return process(inputs, Cipher.DECRYPT_MODE, privateKey(privateKeyString, "Decryption failed"),
+            "Decryption failed");
+    }
+
+    /**
+     * Encrypts each input with a private key (for digital signatures).
+     *
+     * @param inputs the data blocks to encrypt
+     * @param privateKeyString the Base64 encoded private key
+     * @return the encrypted blocks, in input order
+     * @throws RuntimeException if any operation fails
+     */
+    public List<byte[]> encryptWithPrivateKey(List<byte[]> inputs, String privateKeyString) {
+        return process(inputs, Cipher.ENCRYPT_MODE, privateKey(privateKeyString, "Encryption with private key failed"),
+            "Encryption with private key failed");
+    }
+
+    /**
+     * Decrypts each input with a public key (for verifying digital signatures).
+     *
+     * @param inputs the encrypted blocks
+     * @param publicKeyString the Base64 encoded public key
+     * @return the decrypted blocks, in input order
+     * @throws RuntimeException if any operation fails
+     */
+    public List<byte[]> decryptWithPublicKey(List<byte[]> inputs, String publicKeyString) {
+        return process(inputs, Cipher.DECRYPT_MODE, publicKey(publicKeyString, "Decryption with public key failed"),
+            "Decryption with public key failed");
+    }
+
+    /**
+     * Shuts the thread pool down
+     */
+    @Override
+    public void close() {
+        executor.shutdown();
+    }
+
+    private List<byte[]> process(List<byte[]> inputs, int opmode, Key key, String failure) {
+        int count = inputs.size();
+        if (count == 0) {
+            return Collections.emptyList();
+        }
+        // Random access by index from several threads
+        List<byte[]> source = inputs instanceof RandomAccess ? inputs : new ArrayList<>(inputs);
+        byte[][] results = new byte[count][];
+
+        String provider = BouncyCastleSupport.register();
+        int slices = Math.min(count, threads * SLICES_PER_THREAD);
+        List<Future<?>> futures = new ArrayList<>(slices);
+        for (int slice = 0; slice < slices; slice++) {
+            int from = (int) ((long) count * slice / slices);
+            int to = (int) ((long) count * (slice + 1) / slices);
+            futures.add(executor.submit(() -> {
+                for (int i = from; i < to; i++) {
+                    // cancelAll interrupts the slices still running after a failure
+                    if (Thread.interrupted()) {
+                        throw new InterruptedException("Cancelled before item " + i);
+                    }
+                    byte[] input = source.get(i);
+                    try {
+                        results[i] = CipherPool.execute(TRANSFORMATION, provider, opmode, key, null,
+                            cipher -> cipher.doFinal(input));
+                    } catch (GeneralSecurityException e) {
+                        throw new GeneralSecurityException("Item " + i + ": " + e.getMessage(), e);
+                    }
+                }
+                return null;
+            }));
+        }
+
+        try {
+            for (Future<?> future : futures) {
+                future.get();
+            }
+        } catch (ExecutionException e) {
+            cancelAll(futures);
+            throw new RuntimeException(failure, e.getCause());
+        } catch (InterruptedException e) {
+            cancelAll(futures);
+            Thread.currentThread().interrupt();
+            throw new RuntimeException(failure, e);
+        }
+        return Arrays.asList(results);
+    }
+
+    private static void cancelAll(List<Future<?>> futures) {
+        for (Future<?> future : futures) {
+            future.cancel(true);
+        }
+    }
+
+    private static Key publicKey(String publicKeyString, String failure) {
+        try {
+            return RSAUtils.parsePublicKey(publicKeyString);
+        } catch (Exception e) {
+            throw new RuntimeException(failure, e);
+        }
+    }
+
+    private static Key privateKey(String privateKeyString, String failure) {
+        try {
+            return RSAUtils.parsePrivateKey(privateKeyString);
+        } catch (Exception e) {
+            throw new RuntimeException(failure, e);
+        }
+    }
+}
@@ -0,0 +1,197 @@
+package com.enctool.app.asymmetric;
+
+import com.enctool.app.algorithm.AESAlgorithm;
+import com.enctool.app.algorithm.EncryptedFileCipher;
+import com.enctool.app.util.CodecUtils;
+import com.enctool.app.util.ProgressTracker;
+
+import javax.crypto.Cipher;
+import javax.crypto.spec.OAEPParameterSpec;
+import javax.crypto.spec.PSource;
+import javax.crypto.spec.SecretKeySpec;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.security.GeneralSecurityException;
+import java.security.Key;
+import java.security.SecureRandom;
+import java.security.spec.MGF1ParameterSpec;
+import java.util.Arrays;
+
+/**
+ * Hybrid RSA encryption for data of any size.
+ * A random AES-256 session key encrypts the data in chunked AES-GCM, and only the
+ * session key is encrypted with RSA-OAEP, so the cost of the RSA operation does not
+ * depend on the amount of data.
+ * <p>
+ * Layout, numbers big-endian:
+ * <pre>
+ *   magic        4 bytes  "RSAE"
+ *   version      1 byte   1
+ *   wrapped key  2 bytes length + RSA-OAEP (SHA-256, MGF1 with SHA-256) encrypted AES key
+ *   body         an AES/GCM file in the format of EncryptedFileHeader
+ * </pre>
+ */
+public class RSAEnvelope {
+
+    private static final byte[] MAGIC = {'R', 'S', 'A', 'E'};
+    private static final int VERSION = 1;
+
+    private static final String WRAP_TRANSFORMATION = "RSA/ECB/OAEPPadding";
+    private static final OAEPParameterSpec OAEP_PARAMS = new OAEPParameterSpec(
+        "SHA-256", "MGF1", MGF1ParameterSpec.SHA256, PSource.PSpecified.DEFAULT);
+
+    private static final int SESSION_KEY_BYTES = 32;
+
+    private static final SecureRandom RANDOM = new SecureRandom();
+
+    /**
+     * Encrypts a file for the holder of the private key, replacing the output file.
+     *
+     * @param input the file to encrypt
+     * @param output the file to write
+     * @param publicKeyString the Base64 encoded public key
+     */
+    public static void encrypt(Path input, Path output, String publicKeyString) throws IOException {
+        encrypt(input, output, publicKeyString, ProgressTracker.NONE);
+    }
+
+    /**
+     * Same as {@link #encrypt(Path, Path, String)}, reporting the bytes read to the
+     * tracker, which can also cancel the operation.
+     */
+    public static void encrypt(Path input, Path output, String publicKeyString, ProgressTracker progress)
+            throws IOException {
+        try (InputStream in = Files.newInputStream(input);
+             OutputStream out = Files.newOutputStream(output)) {
+            encrypt(in, out, publicKeyString, progress);
+        }
+    }
+
+    /**
+     * Decrypts a file written by {@link #encrypt(Path, Path, String)}, replacing the output file.
+     *
+     * @param input the file to decrypt
+     * @param output the file to write
+     * @param privateKeyString the Base64 encoded private key
+     */
+    public static void decrypt(Path input, Path output, String privateKeyString) throws IOException {
+        decrypt(input, output, privateKeyString, ProgressTracker.NONE);
+    }
+
+    /**
+     * Same as {@link #decrypt(Path, Path, String)}, reporting the bytes read to the
+     * tracker, which can also cancel the operation.
+     */
+    public static void decrypt(Path input, Path output, String privateKeyString, ProgressTracker progress)
+            throws IOException {
+        try (InputStream in = Files.newInputStream(input);
+             OutputStream out = Files.newOutputStream(output)) {
+            decrypt(in, out, privateKeyString, progress);
+        }
+    }
+
+    /**
+     * Encrypts a stream. Neither stream is closed.
+     *
+     * @param in the data to encrypt
+     * @param out where the envelope is written
+     * @param publicKeyString the Base64 encoded public key
+     */
+    public static void encrypt(InputStream in, OutputStream out, String publicKeyString) throws IOException {
+        encrypt(in, out, publicKeyString, ProgressTracker.NONE);
+    }
+
+    /**
+     * Same as {@link #encrypt(InputStream, OutputStream, String)}, reporting the bytes
+     * read to the tracker, which can also cancel the operation.
+     */
+    public static void encrypt(InputStream in, OutputStream out, String publicKeyString, ProgressTracker progress)
+            throws IOException {
+        byte[] sessionKey = new byte[SESSION_KEY_BYTES];
+        byte[] iv = new byte[16];
+        RANDOM.nextBytes(sessionKey);
+        RANDOM.nextBytes(iv);
+        try {
+            byte[] wrappedKey;
+            try {
+                Cipher cipher = Cipher.getInstance(WRAP_TRANSFORMATION);
+                cipher.init(Cipher.WRAP_MODE, RSAUtils.parsePublicKey(publicKeyString), OAEP_PARAMS);
+                wrappedKey = cipher.wrap(new SecretKeySpec(sessionKey, "AES"));
+            } catch (GeneralSecurityException e) {
+                throw new IOException("Wrapping the session key failed: " + e.getMessage(), e);
+            }
+
+            DataOutputStream data = new DataOutputStream(out);
+            data.write(MAGIC);
+            data.writeByte(VERSION);
+            data.writeShort(wrappedKey.length);
+            data.write(wrappedKey);
+
+            // The raw key entry point keeps the session key out of the shared key cache
+            new EncryptedFileCipher().withProgress(progress).encrypt(new AESAlgorithm(), in, out,
+                sessionKey, CodecUtils.toBase64(iv));
+        } finally {
+            Arrays.fill(sessionKey, (byte) 0);
+        }
+    }
+
+    /**
+     * Decrypts a stream written by {@link #encrypt(InputStream, OutputStream, String)}.
+     * Neither stream is closed.
+     *
+     * @param in the envelope to decrypt
+     * @param out where the data is written
+     * @param privateKeyString the Base64 encoded private key
+     */
+    public static void decrypt(InputStream in, OutputStream out, String privateKeyString) throws IOException {
+        decrypt(in, out, privateKeyString, ProgressTracker.NONE);
+    }
+
+    /**
+     * Same as {@link #decrypt(InputStream, OutputStream, String)}, reporting the bytes
+     * read to the tracker, which can also cancel the operation.
+     */
+    public static void decrypt(InputStream in, OutputStream out, String privateKeyString, ProgressTracker progress)
+            throws IOException {
+        DataInputStream data = new DataInputStream(in);
+        byte[] wrappedKey;
+        try {
+            byte[] magic = new byte[MAGIC.length];
+            data.readFully(magic);
+            if (!Arrays.equals(magic, MAGIC)) {
+                throw new IOException("Not an RSA envelope file");
+            }
+            int version = data.readUnsignedByte();
+            if (version != VERSION) {
+                throw new IOException("Unsupported RSA envelope version: " + version);
+            }
+            wrappedKey = new byte[data.readUnsignedShort()];
+            data.readFully(wrappedKey);
+            progress.advance(MAGIC.length + 3 + wrappedKey.length);
+        } catch (EOFException e) {
+            throw new IOException("Not an RSA envelope file (truncated header)", e);
+        }
+
+        byte[] sessionKey;
+        try {
+            Cipher cipher = Cipher.getInstance(WRAP_TRANSFORMATION);
+            cipher.init(Cipher.UNWRAP_MODE, RSAUtils.parsePrivateKey(privateKeyString), OAEP_PARAMS);
+            Key key = cipher.unwrap(wrappedKey, "AES", Cipher.SECRET_KEY);
+            sessionKey = key.getEncoded();
+        } catch (GeneralSecurityException e) {
+            throw new IOException("Unwrapping the session key failed (wrong private key?)", e);
+        }
+
+        try {
+            new EncryptedFileCipher().withProgress(progress).decrypt(data, out, sessionKey);
+        } finally {
+            Arrays.fill(sessionKey, (byte) 0);
+        }
+    }
+}
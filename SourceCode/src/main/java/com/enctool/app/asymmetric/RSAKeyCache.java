@@ -0,0 +1,118 @@
+package com.enctool.app.asymmetric;
+
+import com.enctool.app.util.CodecUtils;
+
+import java.security.GeneralSecurityException;
+import java.security.Key;
+import java.security.KeyFactory;
+import java.security.MessageDigest;
+import java.security.PrivateKey;
+import java.security.PublicKey;
+import java.security.spec.PKCS8EncodedKeySpec;
+import java.security.spec.X509EncodedKeySpec;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Bounded LRU cache of parsed RSA keys, keyed by the SHA-256 fingerprint of the
+ * encoded key. Parsing the ASN.1 structure and, for private keys, setting up the
+ * CRT parameters costs more than a short RSA operation, so repeated operations
+ * with the same key reuse the parsed object.
+ */
+public final class RSAKeyCache {
+
+    private static final ThreadLocal<MessageDigest> SHA256 = ThreadLocal.withInitial(() -> {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (GeneralSecurityException e) {
+            throw new IllegalStateException("SHA-256 not available", e);
+        }
+    });
+
+    private final int maxEntries;
+    private final Map<String, Key> keys;
+
+    /**
+     * Creates a cache holding at most the given number of keys.
+     *
+     * @param maxEntries the maximum number of cached keys
+     */
+    public RSAKeyCache(int maxEntries) {
+        if (maxEntries <= 0) {
+            throw new IllegalArgumentException("Cache size must be positive");
+        }
+        this.maxEntries = maxEntries;
+        this.keys = new LinkedHashMap<String, Key>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, Key> eldest) {
+                return size() > RSAKeyCache.this.maxEntries;
+            }
+        };
+    }
+
+    /**
+     * Returns the public key for a Base64 encoded X.509 key, parsing it on first use.
+     *
+     * @param publicKeyString the Base64 encoded public key
+     * @throws GeneralSecurityException if the key is not a valid RSA public key
+     */
+    public PublicKey getPublicKey(String publicKeyString) throws GeneralSecurityException {
+        byte[] encoded = CodecUtils.fromBase64(publicKeyString);
+        String fingerprint = fingerprint("public", encoded);
+        Key key = get(fingerprint);
+        if (key == null) {
+            key = KeyFactory.getInstance("RSA").generatePublic(new X509EncodedKeySpec(encoded));
+            key = putIfAbsent(fingerprint, key);
+        }
+        return (PublicKey) key;
+    }
+
+    /**
+     * Returns the private key for a Base64 encoded PKCS#8 key, parsing it on first use.
+     *
+     * @param privateKeyString the Base64 encoded private key
+     * @throws GeneralSecurityException if the key is not a valid RSA private key
+     */
+    public PrivateKey getPrivateKey(String privateKeyString) throws GeneralSecurityException {
+        byte[] encoded = CodecUtils.fromBase64(privateKeyString);
+        String fingerprint = fingerprint("private", encoded);
+        Key key = get(fingerprint);
+        if (key == null) {
+            key = KeyFactory.getInstance("RSA").generatePrivate(new PKCS8EncodedKeySpec(encoded));
+            key = putIfAbsent(fingerprint, key);
+        }
+        return (PrivateKey) key;
+    }
+
+    /**
+     * Number of keys currently cached
+     */
+    public synchronized int size() {
+        return keys.size();
+    }
+
+    /**
+     * Removes all keys from the cache
+     */
+    public synchronized void clear() {
+        keys.clear();
+    }
+
+    private synchronized Key get(String fingerprint) {
+        return keys.get(fingerprint);
+    }
+
+    /**
+     * Caches a freshly parsed key unless another thread got there first,
+     * and returns the cached key
+     */
+    private synchronized Key putIfAbsent(String fingerprint, Key key) {
+        Key existing = keys.putIfAbsent(fingerprint, key);
+        return existing != null ? existing : key;
+    }
+
+    private static String fingerprint(String type, byte[] encoded) {
+        MessageDigest digest = SHA256.get();
+        return type + ":" + CodecUtils.toBase64(digest.digest(encoded));
+    }
+}
@@ -1,13 +1,23 @@
 package com.enctool.app.asymmetric;
 
+import com.enctool.app.algorithm.CipherPool;
+import com.enctool.app.util.BouncyCastleSupport;
+import com.enctool.app.util.CodecUtils;
+
 import java.security.*;
-import java.util.Base64;
 import javax.crypto.Cipher;
 
 /**
  * Utility class for RSA asymmetric encryption operations.
  */
 public class RSAUtils {
+
+    // Bouncy Castle's plain "RSA" cipher, which the text methods have always produced;
+    // the JDK's "RSA" adds PKCS#1 padding and could not read existing ciphertext
+    private static final String TRANSFORMATION = "RSA";
+
+    // Parsed keys, shared by all operations
+    private static final RSAKeyCache KEY_CACHE = new RSAKeyCache(32);
     
     /**
      * Generates a new RSA key pair with the specified key size.
@@ -21,7 +31,38 @@ public class RSAUtils {
         keyGen.initialize(keySize);
         return keyGen.generateKeyPair();
     }
-    
+
+    /**
+     * Parses a Base64 encoded X.509 public key.
+     * Parsed keys are cached, so repeated calls with the same key are cheap.
+     *
+     * @param publicKeyString the Base64 encoded public key
+     * @return the public key
+     * @throws GeneralSecurityException if the key is not a valid RSA public key
+     */
+    public static PublicKey parsePublicKey(String publicKeyString) throws GeneralSecurityException {
+        return KEY_CACHE.getPublicKey(publicKeyString);
+    }
+
+    /**
+     * Parses a Base64 encoded PKCS#8 private key.
+     * Parsed keys are cached, so repeated calls with the same key are cheap.
+     *
+     * @param privateKeyString the Base64 encoded private key
+     * @return the private key
+     * @throws GeneralSecurityException if the key is not a valid RSA private key
+     */
+    public static PrivateKey parsePrivateKey(String privateKeyString) throws GeneralSecurityException {
+        return KEY_CACHE.getPrivateKey(privateKeyString);
+    }
+
+    /**
+     * Removes all parsed keys from the cache
+     */
+    public static void clearKeyCache() {
+        KEY_CACHE.clear();
+    }
+
     /**
      * Encrypts text using a public key.
      *
@@ -32,18 +73,13 @@ public class RSAUtils {
      */
     public static String encryptWithPublicKey(String plainText, String publicKeyString) {
         try {
-            // Convert Base64 encoded public key to PublicKey object
-            byte[] publicKeyBytes = Base64.getDecoder().decode(publicKeyString);
-            KeyFactory keyFactory = KeyFactory.getInstance("RSA");
-            PublicKey publicKey = keyFactory.generatePublic(new java.security.spec.X509EncodedKeySpec(publicKeyBytes));
-            
-            // Initialize cipher for encryption
-            Cipher cipher = Cipher.getInstance("RSA");
-            cipher.init(Cipher.ENCRYPT_MODE, publicKey);
+            // Look up the parsed public key
+            PublicKey publicKey = parsePublicKey(publicKeyString);
             
-            // Encrypt the text
-            byte[] encryptedBytes = cipher.doFinal(plainText.getBytes());
-            return Base64.getEncoder().encodeToString(encryptedBytes);
+            // Encrypt with a cipher from the per-thread pool
+            byte[] encryptedBytes = CipherPool.execute(TRANSFORMATION, BouncyCastleSupport.register(), Cipher.ENCRYPT_MODE, publicKey, null,
+                cipher -> cipher.doFinal(plainText.getBytes()));
+            return CodecUtils.toBase64(encryptedBytes);
         } catch (Exception e) {
             throw new RuntimeException("Encryption failed", e);
         }
@@ -59,20 +95,15 @@ public class RSAUtils {
      */
     public static String decryptWithPrivateKey(String encryptedText, String privateKeyString) {
         try {
-            // Convert Base64 encoded private key to PrivateKey object
-            byte[] privateKeyBytes = Base64.getDecoder().decode(privateKeyString);
-            KeyFactory keyFactory = KeyFactory.getInstance("RSA");
-            PrivateKey privateKey = keyFactory.generatePrivate(new java.security.spec.PKCS8EncodedKeySpec(privateKeyBytes));
+            // Look up the parsed private key
+            PrivateKey privateKey = parsePrivateKey(privateKeyString);
             
             // Convert Base64 encoded encrypted text to byte array
-            byte[] encryptedBytes = Base64.getDecoder().decode(encryptedText);
+            byte[] encryptedBytes = CodecUtils.fromBase64(encryptedText);
             
-            // Initialize cipher for decryption
-            Cipher cipher = Cipher.getInstance("RSA");
-            cipher.init(Cipher.DECRYPT_MODE, privateKey);
-            
-            // Decrypt the text
-            byte[] decryptedBytes = cipher.doFinal(encryptedBytes);
+            // Decrypt with a cipher from the per-thread pool
+            byte[] decryptedBytes = CipherPool.execute(TRANSFORMATION, BouncyCastleSupport.register(), Cipher.DECRYPT_MODE, privateKey, null,
+                cipher -> cipher.doFinal(encryptedBytes));
             return new String(decryptedBytes);
         } catch (Exception e) {
             throw new RuntimeException("Decryption failed", e);
@@ -89,18 +120,13 @@ public class RSAUtils {
      */
     public static String encryptWithPrivateKey(String plainText, String privateKeyString) {
         try {
-            // Convert Base64 encoded private key to PrivateKey object
-            byte[] privateKeyBytes = Base64.getDecoder().decode(privateKeyString);
-            KeyFactory keyFactory = KeyFactory.getInstance("RSA");
-            PrivateKey privateKey = keyFactory.generatePrivate(new java.security.spec.PKCS8EncodedKeySpec(privateKeyBytes));
-            
-            // Initialize cipher for encryption
-            Cipher cipher = Cipher.getInstance("RSA");
-            cipher.init(Cipher.ENCRYPT_MODE, privateKey);
+            // Look up the parsed private key
+            PrivateKey privateKey = parsePrivateKey(privateKeyString);
             
-            // Encrypt the text
-            byte[] encryptedBytes = cipher.doFinal(plainText.getBytes());
-            return Base64.getEncoder().encodeToString(encryptedBytes);
+            // Encrypt with a cipher from the per-thread pool
+            byte[] encryptedBytes = CipherPool.execute(TRANSFORMATION, BouncyCastleSupport.register(), Cipher.ENCRYPT_MODE, privateKey, null,
+                cipher -> cipher.doFinal(plainText.getBytes()));
+            return CodecUtils.toBase64(encryptedBytes);
         } catch (Exception e) {
             throw new RuntimeException("Encryption with private key failed", e);
         }
@@ -116,20 +142,15 @@ public class RSAUtils {
      */
     public static String decryptWithPublicKey(String encryptedText, String publicKeyString) {
         try {
-            // Convert Base64 encoded public key to PublicKey object
-            byte[] publicKeyBytes = Base64.getDecoder().decode(publicKeyString);
-            KeyFactory keyFactory = KeyFactory.getInstance("RSA");
-            PublicKey publicKey = keyFactory.generatePublic(new java.security.spec.X509EncodedKeySpec(publicKeyBytes));
+            // Look up the parsed public key
+            PublicKey publicKey = parsePublicKey(publicKeyString);
             
             // Convert Base64 encoded encrypted text to byte array
-            byte[] encryptedBytes = Base64.getDecoder().decode(encryptedText);
-            
-            // Initialize cipher for decryption
-            Cipher cipher = Cipher.getInstance("RSA");
-            cipher.init(Cipher.DECRYPT_MODE, publicKey);
+            byte[] encryptedBytes = CodecUtils.fromBase64(encryptedText);
             
-            // Decrypt the text
-            byte[] decryptedBytes = cipher.doFinal(encryptedBytes);
+            // Decrypt with a cipher from the per-thread pool
+            byte[] decryptedBytes = CipherPool.execute(TRANSFORMATION, BouncyCastleSupport.register(), Cipher.DECRYPT_MODE, publicKey, null,
+                cipher -> cipher.doFinal(encryptedBytes));
             return new String(decryptedBytes);
         } catch (Exception e) {
             throw new RuntimeException("Decryption with public key failed", e);
@@ -0,0 +1,660 @@
+package com.enctool.app.cli;
+
+import com.enctool.app.algorithm.AESAlgorithm;
+import com.enctool.app.algorithm.BlowfishAlgorithm;
+import com.enctool.app.algorithm.DESAlgorithm;
+import com.enctool.app.algorithm.EncryptedFileCipher;
+import com.enctool.app.algorithm.RC4Algorithm;
+import com.enctool.app.algorithm.SymmetricAlgorithm;
+import com.enctool.app.algorithm.TripleDESAlgorithm;
+import com.enctool.app.algorithm.TwofishAlgorithm;
+import com.enctool.app.asymmetric.KeyFileFormat;
+import com.enctool.app.asymmetric.RSAEnvelope;
+import com.enctool.app.asymmetric.RSAUtils;
+import com.enctool.app.hash.FileHasher;
+import com.enctool.app.hash.ResumableHasher;
+import com.enctool.app.hash.TreeHasher;
+import com.enctool.app.traditional.AffineCipher;
+import com.enctool.app.traditional.CaesarCipher;
+import com.enctool.app.traditional.CipherAlgorithm;
+import com.enctool.app.traditional.HillCipher;
+import com.enctool.app.traditional.PreparedCipher;
+import com.enctool.app.traditional.SubstitutionCipher;
+import com.enctool.app.traditional.TranspositionCipher;
+import com.enctool.app.traditional.VigenereCipher;
+import com.enctool.app.util.CodecUtils;
+
+import java.io.BufferedWriter;
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.PrintStream;
+import java.io.Reader;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.PathMatcher;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.security.KeyPair;
+import java.security.MessageDigest;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * Command-line front end for servers and pipelines. It uses only the algorithm,
+ * asymmetric, hash and traditional packages, so no Swing or AWT class is loaded.
+ * <p>
+ * Without file arguments, or with "-", data is read from stdin and written to
+ * stdout. File arguments may be glob patterns such as {@code "logs/**.txt"},
+ * which are expanded here so they also work in shells that do not expand them.
+ * Several files are processed in parallel; their results are printed in
+ * argument order.
+ */
+public final class EncToolCli {
+
+    private static final String USAGE = String.join("\n",
+        "Usage: enctool <command> [options] [FILE|GLOB|-]...",
+        "",
+        "Commands:",
+        "  hash            [-a ALG] [--tree | --resumable]",
+        "  encrypt         -a ALG -k KEY [-m MODE] [-p PADDING] [--iv IV]",
+        "  decrypt         -k KEY",
+        "  rsa-encrypt     --public-key KEY",
+        "  rsa-decrypt     --private-key KEY",
+        "  classic-encrypt -c CIPHER -k KEY [-l LANGUAGE]",
+        "  classic-decrypt -c CIPHER -k KEY [-l LANGUAGE]",
+        "  keygen          -a ALG [-s BITS] | -a RSA [-s BITS] [-o PREFIX] | -c CIPHER [-l LANGUAGE]",
+        "",
+        "Options:",
+        "  -o PATH     output file, or output directory when several files are given",
+        "  -j N        files processed in parallel (default: number of processors)",
+        "  KEY         key text, or @FILE to read it from a file (saved key files are accepted)",
+        "",
+        "Files are written next to the input: encrypting appends .enc, decrypting removes it",
+        "(or appends .dec). Hashes are printed as '<hex>  <file>'.",
+        "Symmetric algorithms: AES DES 3DES Blowfish RC4 Twofish",
+        "Classic ciphers: caesar affine vigenere substitution hill transposition");
+
+    // Options that take a value; everything else starting with '-' is a flag
+    private static final Set<String> VALUE_OPTIONS = new HashSet<>(Arrays.asList(
+        "-a", "-k", "-m", "-p", "--iv", "-o", "-j", "-c", "-l", "-s", "--public-key", "--private-key"));
+
+    private static final Set<String> FLAGS = new HashSet<>(Arrays.asList("--tree", "--resumable", "-h", "--help"));
+
+    private static final String ENCRYPTED_SUFFIX = ".enc";
+
+    private final InputStream stdin;
+    private final PrintStream stdout;
+    private final PrintStream stderr;
+
+    private final Map<String, String> options = new HashMap<>();
+    private final Set<String> flags = new HashSet<>();
+    private final List<String> operands = new ArrayList<>();
+
+    EncToolCli(InputStream stdin, PrintStream stdout, PrintStream stderr) {
+        this.stdin = stdin;
+        this.stdout = stdout;
+        this.stderr = stderr;
+    }
+
+    public static void main(String[] args) {
+        System.exit(run(args));
+    }
+
+    /**
+     * Runs a command with the process streams.
+     *
+     * @return the exit code: 0 on success, 1 if any file failed, 2 for usage errors
+     */
+    public static int run(String[] args) {
+        return new EncToolCli(System.in, System.out, System.err).execute(args);
+    }
+
+    int execute(String[] args) {
+        if (args.length == 0 || args[0].equals("-h") || args[0].equals("--help")) {
+            stdout.println(USAGE);
+            return args.length == 0 ? 2 : 0;
+        }
+        try {
+            parseArguments(Arrays.copyOfRange(args, 1, args.length));
+            if (flags.contains("-h") || flags.contains("--help")) {
+                stdout.println(USAGE);
+                return 0;
+            }
+            switch (args[0]) {
+                case "hash":
+                    return hash();
+                case "encrypt":
+                    return encrypt();
+                case "decrypt":
+                    return decrypt();
+                case "rsa-encrypt":
+                    return rsa(true);
+                case "rsa-decrypt":
+                    return rsa(false);
+                case "classic-encrypt":
+                    return classic(true);
+                case "classic-decrypt":
+                    return classic(false);
+                case "keygen":
+                    return keygen();
+                default:
+                    throw new UsageException("Unknown command: " + args[0]);
+            }
+        } catch (UsageException e) {
+            stderr.println("enctool: " + e.getMessage());
+            stderr.println("Run 'enctool --help' for usage.");
+            return 2;
+        } catch (Exception e) {
+            stderr.println("enctool: " + e.getMessage());
+            return 1;
+        }
+    }
+
+    private void parseArguments(String[] args) {
+        for (int i = 0; i < args.length; i++) {
+            String arg = args[i];
+            if (VALUE_OPTIONS.contains(arg)) {
+                if (i + 1 == args.length) {
+                    throw new UsageException("Missing value for " + arg);
+                }
+                options.put(arg, args[++i]);
+            } else if (FLAGS.contains(arg)) {
+                flags.add(arg);
+            } else if (arg.startsWith("-") && !arg.equals("-")) {
+                throw new UsageException("Unknown option: " + arg);
+            } else {
+                operands.add(arg);
+            }
+        }
+    }
+
+    // ---- commands ----
+
+    private int hash() throws Exception {
+        String algorithm = options.getOrDefault("-a", "SHA-256");
+        MessageDigest.getInstance(algorithm);
+        boolean tree = flags.contains("--tree");
+        boolean resumable = flags.contains("--resumable");
+        if (tree && resumable) {
+            throw new UsageException("--tree and --resumable exclude each other");
+        }
+        if (tree && !TreeHasher.supports(algorithm)) {
+            throw new UsageException("Tree hashing is only available for SHA-2 algorithms");
+        }
+        if (resumable && !ResumableHasher.supports(algorithm)) {
+            throw new UsageException("Resumable hashing is not available for " + algorithm);
+        }
+
+        if (readsStdin()) {
+            MessageDigest digest = MessageDigest.getInstance(algorithm);
+            byte[] buffer = new byte[FileHasher.DEFAULT_BUFFER_SIZE];
+            int bytesRead;
+            while ((bytesRead = stdin.read(buffer)) != -1) {
+                digest.update(buffer, 0, bytesRead);
+            }
+            stdout.println(CodecUtils.toHex(digest.digest()) + "  -");
+            return 0;
+        }
+
+        return forEachFile(inputFiles(), file -> {
+            byte[] digest;
+            if (tree) {
+                digest = new TreeHasher(algorithm).hash(file);
+            } else if (resumable) {
+                digest = new ResumableHasher(algorithm).hash(file).getDigest();
+            } else {
+                digest = new FileHasher().hash(file, algorithm);
+            }
+            return CodecUtils.toHex(digest) + "  " + file;
+        });
+    }
+
+    private int encrypt() throws Exception {
+        SymmetricAlgorithm algorithm = symmetricAlgorithm(requireOption("-a"));
+        String key = readKey(requireOption("-k"));
+        List<String> modes = Arrays.asList(algorithm.getSupportedModes());
+        // Authenticated GCM by default where the algorithm offers it
+        String mode = options.getOrDefault("-m", modes.contains("GCM") ? "GCM" : modes.get(0));
+        String padding = options.getOrDefault("-p",
+            "GCM".equals(mode) || "CTR".equals(mode) ? "NoPadding" : algorithm.getSupportedPaddings()[0]);
+        if (!modes.contains(mode)) {
+            throw new UsageException("Unsupported mode for this algorithm: " + mode);
+        }
+        String iv = options.get("--iv");
+        EncryptedFileCipher cipher = new EncryptedFileCipher();
+
+        if (readsStdin()) {
+            try (OutputStream out = openOutput()) {
+                cipher.encrypt(algorithm, stdin, out, key, mode, padding, ivFor(algorithm, mode, iv));
+            }
+            return 0;
+        }
+        List<Path> files = inputFiles();
+        if (iv != null && files.size() > 1) {
+            // The same key and IV on two files would reuse the CTR/GCM keystream
+            throw new UsageException("--iv can only be given for a single input file");
+        }
+        return forEachFile(files, file -> writeOutput(file, true,
+            output -> cipher.encrypt(algorithm, file, output, key, mode, padding, ivFor(algorithm, mode, iv))));
+    }
+
+    /**
+     * The IV for one output: the one given on the command line, otherwise a
+     * fresh one, which the file header stores
+     */
+    private static String ivFor(SymmetricAlgorithm algorithm, String mode, String iv) throws Exception {
+        if (iv == null && algorithm.requiresIV(mode)) {
+            return algorithm.generateIV();
+        }
+        return iv;
+    }
+
+    private int decrypt() throws Exception {
+        String key = readKey(requireOption("-k"));
+        EncryptedFileCipher cipher = new EncryptedFileCipher();
+
+        if (readsStdin()) {
+            try (OutputStream out = openOutput()) {
+                cipher.decrypt(stdin, out, key);
+            }
+            return 0;
+        }
+        return forEachFile(inputFiles(), file -> writeOutput(file, false,
+            output -> cipher.decrypt(file, output, key)));
+    }
+
+    private int rsa(boolean encrypt) throws Exception {
+        String key = readKey(requireOption(encrypt ? "--public-key" : "--private-key"));
+        // Parse once up front so a bad key is reported before any file is touched
+        if (encrypt) {
+            RSAUtils.parsePublicKey(key);
+        } else {
+            RSAUtils.parsePrivateKey(key);
+        }
+
+        if (readsStdin()) {
+            try (OutputStream out = openOutput()) {
+                if (encrypt) {
+                    RSAEnvelope.encrypt(stdin, out, key);
+                } else {
+                    RSAEnvelope.decrypt(stdin, out, key);
+                }
+            }
+            return 0;
+        }
+        return forEachFile(inputFiles(), file -> writeOutput(file, encrypt, output -> {
+            if (encrypt) {
+                RSAEnvelope.encrypt(file, output, key);
+            } else {
+                RSAEnvelope.decrypt(file, output, key);
+            }
+        }));
+    }
+
+    private int classic(boolean encrypt) throws Exception {
+        CipherAlgorithm algorithm = classicCipher(requireOption("-c"));
+        // The key is parsed and checked once, before any output is written, and shared by all files
+        PreparedCipher cipher = algorithm.prepare(readKey(requireOption("-k")), language());
+
+        if (readsStdin()) {
+            try (OutputStream out = openOutput()) {
+                classicTransform(cipher, encrypt, stdin, out);
+            }
+            return 0;
+        }
+        return forEachFile(inputFiles(), file -> writeOutput(file, encrypt, output -> {
+            try (InputStream in = Files.newInputStream(file);
+                 OutputStream out = Files.newOutputStream(output)) {
+                classicTransform(cipher, encrypt, in, out);
+            }
+        }));
+    }
+
+    /**
+     * Streams UTF-8 text through a classic cipher
+     */
+    private static void classicTransform(PreparedCipher cipher, boolean encrypt, InputStream in, OutputStream out)
+            throws IOException {
+        Reader reader = new InputStreamReader(in, StandardCharsets.UTF_8);
+        Writer writer = new BufferedWriter(new OutputStreamWriter(out, StandardCharsets.UTF_8));
+        if (encrypt) {
+            cipher.encrypt(reader, writer);
+        } else {
+            cipher.decrypt(reader, writer);
+        }
+        writer.flush();
+    }
+
+    private int keygen() throws Exception {
+        if (options.containsKey("-c")) {
+            stdout.println(classicCipher(options.get("-c")).generateKey(language()));
+            return 0;
+        }
+        String name = requireOption("-a");
+        if (name.equalsIgnoreCase("RSA")) {
+            KeyPair keyPair = RSAUtils.generateKeyPair(intOption("-s", 2048));
+            String publicKey = CodecUtils.toBase64(keyPair.getPublic().getEncoded());
+            String privateKey = CodecUtils.toBase64(keyPair.getPrivate().getEncoded());
+            String prefix = options.get("-o");
+            if (prefix == null) {
+                stdout.println(KeyFileFormat.format(publicKey, true));
+                stdout.println(KeyFileFormat.format(privateKey, false));
+            } else {
+                Path publicFile = Paths.get(prefix + "_public.key");
+                Path privateFile = Paths.get(prefix + "_private.key");
+                KeyFileFormat.write(publicFile, publicKey, true);
+                KeyFileFormat.write(privateFile, privateKey, false);
+                stdout.println(publicFile);
+                stdout.println(privateFile);
+            }
+            return 0;
+        }
+        SymmetricAlgorithm algorithm = symmetricAlgorithm(name);
+        int keySize = options.containsKey("-s") ? intOption("-s", 0) : algorithm.getSupportedKeySizes()[0];
+        stdout.println(algorithm.generateKey(keySize));
+        return 0;
+    }
+
+    // ---- file handling ----
+
+    /**
+     * Work done for one input file; returns the line printed for it
+     */
+    private interface FileTask {
+        String run(Path file) throws Exception;
+    }
+
+    /**
+     * Writes the output file for an input file
+     */
+    private interface OutputTask {
+        void run(Path output) throws Exception;
+    }
+
+    /**
+     * Runs a task that writes the output for an input file. The task writes a
+     * temporary file that replaces the output only on success, so a failure
+     * neither leaves a partial file nor destroys an existing one.
+     */
+    private String writeOutput(Path input, boolean encrypt, OutputTask task) throws Exception {
+        Path output = outputFile(input, encrypt);
+        Path temp = Files.createTempFile(output.toAbsolutePath().getParent(), "." + output.getFileName(), ".tmp");
+        try {
+            task.run(temp);
+            Files.move(temp, output, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } finally {
+            Files.deleteIfExists(temp);
+        }
+        return input + " -> " + output;
+    }
+
+    /**
+     * Runs a task for every file on a pool of -j threads and prints the results
+     * in input order. Failures are reported per file and do not stop the others.
+     */
+    private int forEachFile(List<Path> files, FileTask task) throws InterruptedException {
+        int jobs = Math.min(intOption("-j", Runtime.getRuntime().availableProcessors()), files.size());
+        if (jobs < 1) {
+            throw new UsageException("-j must be at least 1");
+        }
+        ExecutorService executor = Executors.newFixedThreadPool(jobs, runnable -> {
+            Thread thread = new Thread(runnable, "enctool-cli");
+            thread.setDaemon(true);
+            return thread;
+        });
+        try {
+            List<Future<String>> results = new ArrayList<>(files.size());
+            for (Path file : files) {
+                results.add(executor.submit(() -> task.run(file)));
+            }
+            int failed = 0;
+            for (int i = 0; i < files.size(); i++) {
+                try {
+                    stdout.println(results.get(i).get());
+                } catch (ExecutionException e) {
+                    stderr.println(files.get(i) + ": " + describe(e.getCause()));
+                    failed++;
+                }
+            }
+            return failed == 0 ? 0 : 1;
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    private static String describe(Throwable e) {
+        if (e instanceof NoSuchFileException) {
+            return "No such file";
+        }
+        return e.getMessage() != null ? e.getMessage() : e.toString();
+    }
+
+    private boolean readsStdin() {
+        if (operands.isEmpty() || operands.equals(List.of("-"))) {
+            return true;
+        }
+        if (operands.contains("-")) {
+            throw new UsageException("'-' cannot be combined with file arguments");
+        }
+        return false;
+    }
+
+    private OutputStream openOutput() throws IOException {
+        String output = options.get("-o");
+        if (output == null) {
+            // Not closed by the caller's try-with-resources, only flushed
+            return new FilterOutputStream(stdout) {
+                @Override
+                public void write(byte[] b, int off, int len) throws IOException {
+                    out.write(b, off, len);
+                }
+
+                @Override
+                public void close() throws IOException {
+                    flush();
+                }
+            };
+        }
+        return Files.newOutputStream(Paths.get(output));
+    }
+
+    private List<Path> inputFiles() throws IOException {
+        List<Path> files = new ArrayList<>();
+        for (String operand : operands) {
+            files.addAll(expand(operand));
+        }
+        String output = options.get("-o");
+        if (output != null && files.size() > 1 && !Files.isDirectory(Paths.get(output))) {
+            throw new UsageException("-o must be an existing directory when several files are given");
+        }
+        return files;
+    }
+
+    /**
+     * Expands a glob pattern into the matching regular files, sorted by path.
+     * Patterns are matched relative to the directory before the first
+     * element with a glob character.
+     */
+    static List<Path> expand(String operand) throws IOException {
+        String pattern = operand.replace('\\', '/');
+        int globStart = indexOfGlob(pattern);
+        if (globStart < 0) {
+            return List.of(Paths.get(operand));
+        }
+        int slash = pattern.lastIndexOf('/', globStart);
+        Path base = slash < 0 ? Paths.get(".") : Paths.get(slash == 0 ? "/" : pattern.substring(0, slash));
+        String relativePattern = pattern.substring(slash + 1);
+        PathMatcher matcher = FileSystems.getDefault().getPathMatcher("glob:" + relativePattern);
+        boolean recursive = relativePattern.contains("/") || relativePattern.contains("**");
+
+        List<Path> matches;
+        try (Stream<Path> paths = recursive ? Files.walk(base) : Files.list(base)) {
+            matches = paths
+                .filter(Files::isRegularFile)
+                .filter(path -> matcher.matches(base.relativize(path)))
+                .map(path -> slash < 0 ? base.relativize(path) : path)
+                .sorted()
+                .collect(Collectors.toList());
+        }
+        if (matches.isEmpty()) {
+            throw new IOException("No files match " + operand);
+        }
+        return matches;
+    }
+
+    private static int indexOfGlob(String pattern) {
+        for (int i = 0; i < pattern.length(); i++) {
+            if ("*?[{".indexOf(pattern.charAt(i)) >= 0) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Output path for an input file: the -o file, a file in the -o directory,
+     * or a file next to the input
+     */
+    private Path outputFile(Path input, boolean encrypt) throws IOException {
+        String name = input.getFileName().toString();
+        if (encrypt) {
+            name += ENCRYPTED_SUFFIX;
+        } else if (name.endsWith(ENCRYPTED_SUFFIX) && name.length() > ENCRYPTED_SUFFIX.length()) {
+            name = name.substring(0, name.length() - ENCRYPTED_SUFFIX.length());
+        } else {
+            name += ".dec";
+        }
+
+        String output = options.get("-o");
+        Path target;
+        if (output == null) {
+            target = input.resolveSibling(name);
+        } else if (Files.isDirectory(Paths.get(output))) {
+            target = Paths.get(output).resolve(name);
+        } else {
+            target = Paths.get(output);
+        }
+        if (Files.exists(target) && Files.isSameFile(target, input)) {
+            throw new IOException("Output would overwrite the input");
+        }
+        return target;
+    }
+
+    // ---- option helpers ----
+
+    private String requireOption(String name) {
+        String value = options.get(name);
+        if (value == null) {
+            throw new UsageException("Missing required option " + name);
+        }
+        return value;
+    }
+
+    private int intOption(String name, int defaultValue) {
+        String value = options.get(name);
+        if (value == null) {
+            return defaultValue;
+        }
+        try {
+            return Integer.parseInt(value);
+        } catch (NumberFormatException e) {
+            throw new UsageException("Not a number for " + name + ": " + value);
+        }
+    }
+
+    private String language() {
+        String language = options.getOrDefault("-l", "English");
+        if (!language.equals("English") && !language.equals("Vietnamese")) {
+            throw new UsageException("Language must be English or Vietnamese");
+        }
+        return language;
+    }
+
+    /**
+     * Reads a key given as text or as @FILE. Saved key files with header and
+     * footer lines are unwrapped; other files are used as trimmed text.
+     */
+    private static String readKey(String value) throws IOException {
+        if (!value.startsWith("@")) {
+            return value;
+        }
+        Path file = Paths.get(value.substring(1));
+        String key = KeyFileFormat.read(file);
+        if (key.isEmpty()) {
+            key = new String(Files.readAllBytes(file), StandardCharsets.UTF_8).trim();
+        }
+        return key;
+    }
+
+    private static SymmetricAlgorithm symmetricAlgorithm(String name) {
+        switch (name.toUpperCase(Locale.ROOT)) {
+            case "AES":
+                return new AESAlgorithm();
+            case "DES":
+                return new DESAlgorithm();
+            case "3DES":
+            case "DESEDE":
+            case "TRIPLEDES":
+                return new TripleDESAlgorithm();
+            case "BLOWFISH":
+                return new BlowfishAlgorithm();
+            case "RC4":
+            case "ARCFOUR":
+                return new RC4Algorithm();
+            case "TWOFISH":
+                return new TwofishAlgorithm();
+            default:
+                throw new UsageException("Unknown symmetric algorithm: " + name);
+        }
+    }
+
+    private static CipherAlgorithm classicCipher(String name) {
+        switch (name.toLowerCase(Locale.ROOT)) {
+            case "caesar":
+                return new CaesarCipher();
+            case "affine":
+                return new AffineCipher();
+            case "vigenere":
+                return new VigenereCipher();
+            case "substitution":
+                return new SubstitutionCipher();
+            case "hill":
+                return new HillCipher();
+            case "transposition":
+                return new TranspositionCipher();
+            default:
+                throw new UsageException("Unknown classic cipher: " + name);
+        }
+    }
+
+    /**
+     * Invalid command line; reported with a hint to --help and exit code 2
+     */
+    private static final class UsageException extends RuntimeException {
+        private static final long serialVersionUID = 1L;
+
+        UsageException(String message) {
+            super(message);
+        }
+    }
+}
@@ -0,0 +1,432 @@
+package com.enctool.app.hash;
+
+import com.enctool.app.util.CodecUtils;
+import com.enctool.app.util.ProgressTracker;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * Hashes every regular file below a directory in parallel and keeps the result
+ * in an index file, so that a later run only re-hashes files whose size or
+ * modification time changed.
+ * <p>
+ * The index is UTF-8 text, one file per line, sorted by path:
+ * <pre>
+ *   # enctool-hash-index 1 SHA-256
+ *   &lt;hex digest&gt; TAB &lt;size&gt; TAB &lt;mtime in ms&gt; TAB &lt;path relative to the root, '/' separated&gt;
+ * </pre>
+ * Backslash, tab, carriage return and newline in paths are written as
+ * {@code \\}, {@code \t}, {@code \r} and {@code \n}. The index is replaced
+ * atomically, so an interrupted run leaves the previous index intact.
+ */
+public class DirectoryHasher {
+
+    private static final String INDEX_HEADER = "# enctool-hash-index 1 ";
+
+    // Files per task below which a range is hashed without splitting further
+    private static final int FILES_PER_TASK = 16;
+
+    private static final ThreadLocal<Map<String, MessageDigest>> DIGESTS = ThreadLocal.withInitial(HashMap::new);
+
+    private final String algorithm;
+    private final ForkJoinPool pool;
+    private final FileHasher fileHasher;
+    private ProgressTracker progress = ProgressTracker.NONE;
+
+    public DirectoryHasher(String algorithm) throws NoSuchAlgorithmException {
+        this(algorithm, ForkJoinPool.commonPool());
+    }
+
+    /**
+     * @param algorithm the digest algorithm
+     * @param pool the pool the files are hashed on
+     */
+    public DirectoryHasher(String algorithm, ForkJoinPool pool) throws NoSuchAlgorithmException {
+        MessageDigest.getInstance(algorithm);
+        this.algorithm = algorithm;
+        this.pool = pool;
+        this.fileHasher = new FileHasher();
+    }
+
+    /**
+     * Reports hashed bytes to the tracker, which can also cancel the operation.
+     * The total is added while the tree is listed; files taken from the index
+     * are taken off it again.
+     *
+     * @return this hasher
+     */
+    public DirectoryHasher withProgress(ProgressTracker progress) {
+        this.progress = progress;
+        fileHasher.withProgress(progress);
+        return this;
+    }
+
+    /**
+     * One file of the manifest
+     */
+    public static final class Entry {
+        private final String path;
+        private final long size;
+        private final long modified;
+        private final String digest;
+
+        Entry(String path, long size, long modified, String digest) {
+            this.path = path;
+            this.size = size;
+            this.modified = modified;
+            this.digest = digest;
+        }
+
+        /**
+         * Path relative to the root, with '/' as separator
+         */
+        public String getPath() {
+            return path;
+        }
+
+        public long getSize() {
+            return size;
+        }
+
+        /**
+         * Last modification time in milliseconds since the epoch
+         */
+        public long getModified() {
+            return modified;
+        }
+
+        /**
+         * Digest as lowercase hex
+         */
+        public String getDigest() {
+            return digest;
+        }
+    }
+
+    /**
+     * Outcome of hashing a directory tree
+     */
+    public static final class Result {
+        private final List<Entry> entries;
+        private final int hashed;
+        private final int reused;
+        private final List<String> errors;
+
+        Result(List<Entry> entries, int hashed, int reused, List<String> errors) {
+            this.entries = entries;
+            this.hashed = hashed;
+            this.reused = reused;
+            this.errors = errors;
+        }
+
+        /**
+         * The manifest, sorted by path
+         */
+        public List<Entry> getEntries() {
+            return entries;
+        }
+
+        /**
+         * Number of files whose digest was computed in this run
+         */
+        public int getHashedCount() {
+            return hashed;
+        }
+
+        /**
+         * Number of files whose digest was taken from the index
+         */
+        public int getReusedCount() {
+            return reused;
+        }
+
+        /**
+         * Files that could not be read, with the reason
+         */
+        public List<String> getErrors() {
+            return errors;
+        }
+    }
+
+    /**
+     * Hashes all regular files below a directory without an index
+     */
+    public Result hash(Path root) throws IOException {
+        return hash(root, null);
+    }
+
+    /**
+     * Hashes all regular files below a directory. Digests of files whose size and
+     * modification time match the index are reused; afterwards the index is
+     * rewritten with the new manifest.
+     *
+     * @param root the directory to hash
+     * @param indexFile the index to read and update, or null to hash everything;
+     *                  it is skipped if it lies inside the tree
+     */
+    public Result hash(Path root, Path indexFile) throws IOException {
+        Path absoluteIndex = indexFile == null ? null : indexFile.toAbsolutePath().normalize();
+        List<Path> files = listFiles(root, absoluteIndex, progress);
+        Map<String, Entry> previous = absoluteIndex == null ? Collections.emptyMap() : readIndex(absoluteIndex);
+
+        Entry[] entries = new Entry[files.size()];
+        String[] errors = new String[files.size()];
+        boolean[] reused = new boolean[files.size()];
+        pool.invoke(new FileRange(root, files, previous, entries, errors, reused, 0, files.size()));
+        // Cancelled files show up as errors; keep the previous index rather than write a partial one
+        progress.checkCancelled();
+
+        List<Entry> manifest = new ArrayList<>(files.size());
+        List<String> errorList = new ArrayList<>();
+        int reusedCount = 0;
+        for (int i = 0; i < entries.length; i++) {
+            if (entries[i] != null) {
+                manifest.add(entries[i]);
+                if (reused[i]) {
+                    reusedCount++;
+                }
+            } else {
+                errorList.add(errors[i]);
+            }
+        }
+        manifest.sort(Comparator.comparing(Entry::getPath));
+
+        if (absoluteIndex != null) {
+            writeIndex(absoluteIndex, manifest);
+        }
+        return new Result(manifest, manifest.size() - reusedCount, reusedCount, errorList);
+    }
+
+    /**
+     * Reads an index file. A missing file or one written for another algorithm
+     * yields an empty index.
+     */
+    public Map<String, Entry> readIndex(Path indexFile) throws IOException {
+        Map<String, Entry> index = new HashMap<>();
+        if (!Files.isRegularFile(indexFile)) {
+            return index;
+        }
+        try (BufferedReader reader = Files.newBufferedReader(indexFile, StandardCharsets.UTF_8)) {
+            String header = reader.readLine();
+            if (header == null || !header.equals(INDEX_HEADER + algorithm)) {
+                return index;
+            }
+            String line;
+            while ((line = reader.readLine()) != null) {
+                String[] fields = line.split("\t", 4);
+                if (fields.length != 4) {
+                    throw new IOException("Malformed index line: " + line);
+                }
+                try {
+                    String path = unescape(fields[3]);
+                    index.put(path, new Entry(path, Long.parseLong(fields[1]), Long.parseLong(fields[2]), fields[0]));
+                } catch (NumberFormatException e) {
+                    throw new IOException("Malformed index line: " + line, e);
+                }
+            }
+        }
+        return index;
+    }
+
+    /**
+     * Writes a manifest as an index file, replacing it atomically
+     */
+    public void writeIndex(Path indexFile, List<Entry> manifest) throws IOException {
+        Path parent = indexFile.toAbsolutePath().getParent();
+        Path temp = Files.createTempFile(parent, indexFile.getFileName().toString(), ".tmp");
+        try {
+            try (BufferedWriter writer = Files.newBufferedWriter(temp, StandardCharsets.UTF_8)) {
+                writer.write(INDEX_HEADER + algorithm);
+                writer.newLine();
+                for (Entry entry : manifest) {
+                    writer.write(entry.digest);
+                    writer.write('\t');
+                    writer.write(Long.toString(entry.size));
+                    writer.write('\t');
+                    writer.write(Long.toString(entry.modified));
+                    writer.write('\t');
+                    writer.write(escape(entry.path));
+                    writer.newLine();
+                }
+            }
+            Files.move(temp, indexFile, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } finally {
+            Files.deleteIfExists(temp);
+        }
+    }
+
+    private static List<Path> listFiles(Path root, Path excluded, ProgressTracker progress) throws IOException {
+        List<Path> files = new ArrayList<>();
+        Files.walkFileTree(root, new SimpleFileVisitor<Path>() {
+            @Override
+            public FileVisitResult visitFile(Path file, BasicFileAttributes attrs) {
+                if (attrs.isRegularFile() && !file.toAbsolutePath().normalize().equals(excluded)) {
+                    files.add(file);
+                    progress.addTotal(attrs.size());
+                }
+                return FileVisitResult.CONTINUE;
+            }
+
+            @Override
+            public FileVisitResult visitFileFailed(Path file, IOException e) {
+                // Unreadable entries are skipped; they cannot be hashed anyway
+                return FileVisitResult.CONTINUE;
+            }
+        });
+        return files;
+    }
+
+    private void hashFile(Path root, Path file, Map<String, Entry> previous,
+                          Entry[] entries, String[] errors, boolean[] reused, int i) {
+        String path = relativePath(root, file);
+        try {
+            BasicFileAttributes attrs = Files.readAttributes(file, BasicFileAttributes.class);
+            long size = attrs.size();
+            long modified = attrs.lastModifiedTime().toMillis();
+
+            Entry known = previous.get(path);
+            if (known != null && known.size == size && known.modified == modified) {
+                entries[i] = known;
+                reused[i] = true;
+                progress.addTotal(-size);
+                return;
+            }
+
+            MessageDigest digest = digest();
+            try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+                fileHasher.update(digest, channel, 0, channel.size());
+            } catch (IOException | UncheckedIOException e) {
+                digest.reset();
+                throw e;
+            }
+            entries[i] = new Entry(path, size, modified, CodecUtils.toHex(digest.digest()));
+        } catch (IOException | UncheckedIOException e) {
+            errors[i] = path + ": " + e.getMessage();
+        }
+    }
+
+    /**
+     * Returns the digest of the current thread for this hasher's algorithm
+     */
+    private MessageDigest digest() {
+        return DIGESTS.get().computeIfAbsent(algorithm, name -> {
+            try {
+                return MessageDigest.getInstance(name);
+            } catch (NoSuchAlgorithmException e) {
+                // Checked in the constructor
+                throw new IllegalStateException(e);
+            }
+        });
+    }
+
+    private static String relativePath(Path root, Path file) {
+        StringBuilder sb = new StringBuilder();
+        for (Path part : root.relativize(file)) {
+            if (sb.length() > 0) {
+                sb.append('/');
+            }
+            sb.append(part);
+        }
+        return sb.toString();
+    }
+
+    private static String escape(String path) {
+        StringBuilder sb = new StringBuilder(path.length());
+        for (int i = 0; i < path.length(); i++) {
+            char c = path.charAt(i);
+            switch (c) {
+                case '\\': sb.append("\\\\"); break;
+                case '\t': sb.append("\\t"); break;
+                case '\r': sb.append("\\r"); break;
+                case '\n': sb.append("\\n"); break;
+                default: sb.append(c);
+            }
+        }
+        return sb.toString();
+    }
+
+    private static String unescape(String text) throws IOException {
+        StringBuilder sb = new StringBuilder(text.length());
+        for (int i = 0; i < text.length(); i++) {
+            char c = text.charAt(i);
+            if (c != '\\') {
+                sb.append(c);
+                continue;
+            }
+            if (++i == text.length()) {
+                throw new IOException("Malformed index path: " + text);
+            }
+            switch (text.charAt(i)) {
+                case '\\': sb.append('\\'); break;
+                case 't': sb.append('\t'); break;
+                case 'r': sb.append('\r'); break;
+                case 'n': sb.append('\n'); break;
+                default: throw new IOException("Malformed index path: " + text);
+            }
+        }
+        return sb.toString();
+    }
+
+    /**
+     * Hashes a range of the file list, splitting it in half until it is small
+     */
+    private final class FileRange extends RecursiveAction {
+        private static final long serialVersionUID = 1L;
+
+        private final transient Path root;
+        private final transient List<Path> files;
+        private final transient Map<String, Entry> previous;
+        private final Entry[] entries;
+        private final String[] errors;
+        private final boolean[] reused;
+        private final int first;
+        private final int end;
+
+        FileRange(Path root, List<Path> files, Map<String, Entry> previous,
+                  Entry[] entries, String[] errors, boolean[] reused, int first, int end) {
+            this.root = root;
+            this.files = files;
+            this.previous = previous;
+            this.entries = entries;
+            this.errors = errors;
+            this.reused = reused;
+            this.first = first;
+            this.end = end;
+        }
+
+        @Override
+        protected void compute() {
+            if (end - first > FILES_PER_TASK) {
+                int middle = (first + end) >>> 1;
+                invokeAll(new FileRange(root, files, previous, entries, errors, reused, first, middle),
+                    new FileRange(root, files, previous, entries, errors, reused, middle, end));
+                return;
+            }
+            for (int i = first; i < end; i++) {
+                hashFile(root, files.get(i), previous, entries, errors, reused, i);
+            }
+        }
+    }
+}
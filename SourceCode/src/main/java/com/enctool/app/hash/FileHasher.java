@@ -0,0 +1,169 @@
+package com.enctool.app.hash;
+
+import com.enctool.app.util.ProgressTracker;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+
+/**
+ * Hashes files through a selectable I/O backend.
+ * <ul>
+ *   <li>{@link Backend#STREAM}: heap buffer filled by InputStream.read, the classic path</li>
+ *   <li>{@link Backend#DIRECT_BUFFER}: large direct buffer filled by FileChannel.read,
+ *       which the kernel can fill without an extra copy through the Java heap</li>
+ *   <li>{@link Backend#MEMORY_MAPPED}: the file is mapped in windows and passed to
+ *       MessageDigest.update(ByteBuffer) without any read calls. On Windows a
+ *       mapped file stays locked until the mapping is garbage collected, so it
+ *       cannot be deleted, renamed or overwritten right after hashing; this
+ *       backend therefore has to be chosen explicitly.</li>
+ * </ul>
+ * Files smaller than one buffer are always read with a direct buffer, since
+ * setting up a mapping costs more than reading them. The no-argument
+ * constructor uses {@link Backend#DIRECT_BUFFER}.
+ */
+public class FileHasher {
+
+    /**
+     * How file data reaches the digest
+     */
+    public enum Backend {
+        STREAM, DIRECT_BUFFER, MEMORY_MAPPED
+    }
+
+    // Default read buffer size for the stream and direct buffer backends
+    public static final int DEFAULT_BUFFER_SIZE = 1024 * 1024;
+
+    // Default window size for the memory-mapped backend
+    public static final int DEFAULT_MAP_SIZE = 64 * 1024 * 1024;
+
+    // Direct buffers are costly to allocate and free, so each thread keeps its largest one
+    private static final ThreadLocal<ByteBuffer> DIRECT_BUFFERS = new ThreadLocal<>();
+
+    private final Backend backend;
+    private final int bufferSize;
+    private final int mapSize;
+    private ProgressTracker progress = ProgressTracker.NONE;
+
+    public FileHasher() {
+        this(Backend.DIRECT_BUFFER, DEFAULT_BUFFER_SIZE, DEFAULT_MAP_SIZE);
+    }
+
+    /**
+     * @param backend how file data is read
+     * @param bufferSize bytes per read for the stream and direct buffer backends
+     * @param mapSize bytes mapped at a time for the memory-mapped backend
+     */
+    public FileHasher(Backend backend, int bufferSize, int mapSize) {
+        if (bufferSize <= 0 || mapSize <= 0) {
+            throw new IllegalArgumentException("Buffer and map size must be positive");
+        }
+        this.backend = backend;
+        this.bufferSize = bufferSize;
+        this.mapSize = mapSize;
+    }
+
+    /**
+     * Reports hashed bytes to the tracker, which can also cancel the operation
+     *
+     * @return this hasher
+     */
+    public FileHasher withProgress(ProgressTracker progress) {
+        this.progress = progress;
+        return this;
+    }
+
+    /**
+     * Computes the digest of a file
+     */
+    public byte[] hash(Path file, String algorithm) throws IOException, NoSuchAlgorithmException {
+        MessageDigest digest = MessageDigest.getInstance(algorithm);
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            update(digest, channel, 0, channel.size());
+        }
+        return digest.digest();
+    }
+
+    /**
+     * Feeds a region of a channel to a digest.
+     *
+     * @param digest the digest to update
+     * @param channel the channel to read
+     * @param offset position of the first byte
+     * @param length number of bytes to read
+     */
+    public void update(MessageDigest digest, FileChannel channel, long offset, long length) throws IOException {
+        if (backend == Backend.MEMORY_MAPPED && length > bufferSize) {
+            updateMapped(digest, channel, offset, length);
+        } else if (backend == Backend.STREAM) {
+            updateStream(digest, channel, offset, length);
+        } else {
+            updateDirect(digest, channel, offset, length);
+        }
+    }
+
+    private void updateStream(MessageDigest digest, FileChannel channel, long offset, long length)
+            throws IOException {
+        channel.position(offset);
+        InputStream in = Channels.newInputStream(channel);
+        byte[] buffer = new byte[(int) Math.min(bufferSize, Math.max(length, 1))];
+        for (long remaining = length; remaining > 0; ) {
+            int bytesRead = in.read(buffer, 0, (int) Math.min(buffer.length, remaining));
+            if (bytesRead < 0) {
+                break;
+            }
+            digest.update(buffer, 0, bytesRead);
+            remaining -= bytesRead;
+            progress.advance(bytesRead);
+        }
+    }
+
+    private void updateDirect(MessageDigest digest, FileChannel channel, long offset, long length)
+            throws IOException {
+        ByteBuffer buffer = directBuffer((int) Math.min(bufferSize, Math.max(length, 1)));
+        for (long position = offset, end = offset + length; position < end; ) {
+            buffer.clear().limit((int) Math.min(bufferSize, end - position));
+            int bytesRead = channel.read(buffer, position);
+            if (bytesRead < 0) {
+                break;
+            }
+            buffer.flip();
+            digest.update(buffer);
+            position += bytesRead;
+            progress.advance(bytesRead);
+        }
+    }
+
+    private static ByteBuffer directBuffer(int size) {
+        ByteBuffer buffer = DIRECT_BUFFERS.get();
+        if (buffer == null || buffer.capacity() < size) {
+            buffer = ByteBuffer.allocateDirect(size);
+            DIRECT_BUFFERS.set(buffer);
+        }
+        return buffer;
+    }
+
+    private void updateMapped(MessageDigest digest, FileChannel channel, long offset, long length)
+            throws IOException {
+        for (long done = 0; done < length; ) {
+            int windowLength = (int) Math.min(mapSize, length - done);
+            MappedByteBuffer window = channel.map(FileChannel.MapMode.READ_ONLY, offset + done, windowLength);
+            // Fed in buffer-sized slices so progress and cancellation are not limited to whole windows
+            while (window.hasRemaining()) {
+                int chunk = Math.min(bufferSize, window.remaining());
+                window.limit(window.position() + chunk);
+                digest.update(window);
+                window.limit(windowLength);
+                progress.advance(chunk);
+            }
+            done += windowLength;
+        }
+    }
+}
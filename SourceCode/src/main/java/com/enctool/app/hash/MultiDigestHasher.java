@@ -0,0 +1,206 @@
+package com.enctool.app.hash;
+
+import com.enctool.app.util.ProgressTracker;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Computes several digests of the same data in a single read pass.
+ * Each buffer read from the input is fed to every selected MessageDigest, so
+ * producing MD5, SHA-1 and SHA-256 of a file reads it once instead of three times.
+ * <p>
+ * In parallel mode every digest runs on its own thread. The reader fills the
+ * buffers of a bounded ring and hands each filled buffer to all digest threads;
+ * a buffer goes back to the reader once every digest has consumed it, so memory
+ * use is limited to the ring and the slowest digest sets the pace.
+ */
+public class MultiDigestHasher {
+
+    // Default size of each read buffer
+    public static final int DEFAULT_BUFFER_SIZE = 256 * 1024;
+
+    // Default number of buffers in the ring used in parallel mode
+    public static final int DEFAULT_RING_SIZE = 8;
+
+    private final List<String> algorithms;
+    private final boolean parallel;
+    private final int bufferSize;
+    private final int ringSize;
+    private ProgressTracker progress = ProgressTracker.NONE;
+
+    /**
+     * Creates a hasher for the given algorithms that runs the digests in parallel
+     * when there is more than one of them and more than one processor.
+     */
+    public MultiDigestHasher(List<String> algorithms) {
+        this(algorithms, algorithms.size() > 1 && Runtime.getRuntime().availableProcessors() > 1,
+            DEFAULT_BUFFER_SIZE, DEFAULT_RING_SIZE);
+    }
+
+    /**
+     * @param algorithms the digest algorithms, in the order of the result
+     * @param parallel whether each digest runs on its own thread
+     * @param bufferSize bytes per read
+     * @param ringSize number of buffers shared between the reader and the digest threads
+     */
+    public MultiDigestHasher(List<String> algorithms, boolean parallel, int bufferSize, int ringSize) {
+        if (algorithms.isEmpty()) {
+            throw new IllegalArgumentException("No algorithms selected");
+        }
+        if (bufferSize <= 0 || ringSize <= 0) {
+            throw new IllegalArgumentException("Buffer and ring size must be positive");
+        }
+        this.algorithms = new ArrayList<>(algorithms);
+        this.parallel = parallel;
+        this.bufferSize = bufferSize;
+        this.ringSize = ringSize;
+    }
+
+    /**
+     * Reports hashed bytes to the tracker, which can also cancel the operation
+     *
+     * @return this hasher
+     */
+    public MultiDigestHasher withProgress(ProgressTracker progress) {
+        this.progress = progress;
+        return this;
+    }
+
+    /**
+     * Computes all digests of a file.
+     *
+     * @return the digests by algorithm name, in the order the algorithms were given
+     */
+    public Map<String, byte[]> hash(Path file) throws IOException, NoSuchAlgorithmException {
+        try (InputStream in = Files.newInputStream(file)) {
+            return hash(in);
+        }
+    }
+
+    /**
+     * Computes all digests of the remaining data of a stream. The stream is not closed.
+     *
+     * @return the digests by algorithm name, in the order the algorithms were given
+     */
+    public Map<String, byte[]> hash(InputStream in) throws IOException, NoSuchAlgorithmException {
+        List<MessageDigest> digests = new ArrayList<>(algorithms.size());
+        for (String algorithm : algorithms) {
+            digests.add(MessageDigest.getInstance(algorithm));
+        }
+
+        if (parallel && digests.size() > 1) {
+            hashParallel(in, digests);
+        } else {
+            byte[] buffer = new byte[bufferSize];
+            int bytesRead;
+            while ((bytesRead = in.read(buffer)) != -1) {
+                for (MessageDigest digest : digests) {
+                    digest.update(buffer, 0, bytesRead);
+                }
+                progress.advance(bytesRead);
+            }
+        }
+
+        Map<String, byte[]> results = new LinkedHashMap<>();
+        for (int i = 0; i < digests.size(); i++) {
+            results.put(algorithms.get(i), digests.get(i).digest());
+        }
+        return results;
+    }
+
+    private void hashParallel(InputStream in, List<MessageDigest> digests) throws IOException {
+        BlockingQueue<Slot> free = new ArrayBlockingQueue<>(ringSize);
+        for (int i = 0; i < ringSize; i++) {
+            free.add(new Slot(bufferSize));
+        }
+        List<BlockingQueue<Slot>> queues = new ArrayList<>(digests.size());
+        for (int i = 0; i < digests.size(); i++) {
+            // Every consumer can hold the whole ring, so handing a slot over never blocks
+            queues.add(new ArrayBlockingQueue<>(ringSize + 1));
+        }
+
+        ExecutorService executor = Executors.newFixedThreadPool(digests.size(), runnable -> {
+            Thread thread = new Thread(runnable, "multi-digest");
+            thread.setDaemon(true);
+            return thread;
+        });
+        try {
+            List<Future<?>> consumers = new ArrayList<>(digests.size());
+            for (int i = 0; i < digests.size(); i++) {
+                MessageDigest digest = digests.get(i);
+                BlockingQueue<Slot> queue = queues.get(i);
+                consumers.add(executor.submit(() -> {
+                    for (Slot slot = queue.take(); slot != Slot.END; slot = queue.take()) {
+                        digest.update(slot.buffer, 0, slot.length);
+                        if (slot.pending.decrementAndGet() == 0) {
+                            free.add(slot);
+                        }
+                    }
+                    return null;
+                }));
+            }
+
+            try {
+                while (true) {
+                    Slot slot = free.take();
+                    slot.length = in.readNBytes(slot.buffer, 0, slot.buffer.length);
+                    if (slot.length == 0) {
+                        break;
+                    }
+                    slot.pending.set(queues.size());
+                    for (BlockingQueue<Slot> queue : queues) {
+                        queue.add(slot);
+                    }
+                    progress.advance(slot.length);
+                }
+            } finally {
+                // Stop the consumers, also when reading failed
+                for (BlockingQueue<Slot> queue : queues) {
+                    queue.add(Slot.END);
+                }
+            }
+
+            for (Future<?> consumer : consumers) {
+                consumer.get();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Hashing interrupted", e);
+        } catch (ExecutionException e) {
+            throw new IOException("Hashing failed: " + e.getCause().getMessage(), e.getCause());
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    /**
+     * One buffer of the ring together with the number of digests still reading it
+     */
+    private static final class Slot {
+        static final Slot END = new Slot(0);
+
+        final byte[] buffer;
+        final AtomicInteger pending = new AtomicInteger();
+        int length;
+
+        Slot(int size) {
+            this.buffer = new byte[size];
+        }
+    }
+}
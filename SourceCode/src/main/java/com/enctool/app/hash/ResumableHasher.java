@@ -0,0 +1,336 @@
+package com.enctool.app.hash;
+
+import com.enctool.app.util.ProgressTracker;
+
+import org.bouncycastle.crypto.Digest;
+import org.bouncycastle.crypto.digests.EncodableDigest;
+import org.bouncycastle.crypto.digests.MD5Digest;
+import org.bouncycastle.crypto.digests.SHA1Digest;
+import org.bouncycastle.crypto.digests.SHA224Digest;
+import org.bouncycastle.crypto.digests.SHA256Digest;
+import org.bouncycastle.crypto.digests.SHA384Digest;
+import org.bouncycastle.crypto.digests.SHA512Digest;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.ClosedByInterruptException;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.security.NoSuchAlgorithmException;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Hashes a file while periodically saving the digest state and the byte offset
+ * to a checkpoint file, so that a hash interrupted by a crash or restart
+ * continues from the last checkpoint instead of re-reading the whole file.
+ * <p>
+ * The state comes from the encodable BouncyCastle digests, so only MD5, SHA-1
+ * and the SHA-2 family are supported. A checkpoint is only used if the file
+ * still has the size and modification time it had when the checkpoint was
+ * written; otherwise hashing starts over. The checkpoint is replaced
+ * atomically and deleted once the hash is complete.
+ * <p>
+ * Checkpoint layout, numbers big-endian:
+ * <pre>
+ *   magic       4 bytes  "ENHC"
+ *   version     1 byte   1
+ *   algorithm   modified UTF-8 string, e.g. "SHA-256"
+ *   size        8 bytes  size of the file being hashed
+ *   modified    8 bytes  its modification time in ms
+ *   offset      8 bytes  bytes already hashed
+ *   state       4 bytes length + encoded digest state
+ * </pre>
+ */
+public class ResumableHasher {
+
+    private static final byte[] MAGIC = {'E', 'N', 'H', 'C'};
+    private static final int VERSION = 1;
+
+    private static final List<String> SUPPORTED_ALGORITHMS = Arrays.asList(
+        "MD5", "SHA-1", "SHA-224", "SHA-256", "SHA-384", "SHA-512"
+    );
+
+    // Name suffix of the default checkpoint file
+    public static final String CHECKPOINT_SUFFIX = ".hash-checkpoint";
+
+    // Bytes hashed between two checkpoints by default
+    public static final long DEFAULT_CHECKPOINT_INTERVAL = 256L * 1024 * 1024;
+
+    private static final int BUFFER_SIZE = 1024 * 1024;
+
+    private final String algorithm;
+    private final long checkpointInterval;
+    private ProgressTracker progress = ProgressTracker.NONE;
+
+    public ResumableHasher(String algorithm) throws NoSuchAlgorithmException {
+        this(algorithm, DEFAULT_CHECKPOINT_INTERVAL);
+    }
+
+    /**
+     * @param algorithm the digest algorithm, see {@link #supports(String)}
+     * @param checkpointInterval bytes hashed between two checkpoints
+     */
+    public ResumableHasher(String algorithm, long checkpointInterval) throws NoSuchAlgorithmException {
+        if (!supports(algorithm)) {
+            throw new NoSuchAlgorithmException("Resumable hashing is not available for " + algorithm);
+        }
+        if (checkpointInterval <= 0) {
+            throw new IllegalArgumentException("Checkpoint interval must be positive");
+        }
+        this.algorithm = algorithm;
+        this.checkpointInterval = checkpointInterval;
+    }
+
+    /**
+     * Reports hashed bytes to the tracker, which can also cancel the operation.
+     * A cancelled hash saves a checkpoint like an interrupted one.
+     *
+     * @return this hasher
+     */
+    public ResumableHasher withProgress(ProgressTracker progress) {
+        this.progress = progress;
+        return this;
+    }
+
+    /**
+     * Checks whether the digest state of an algorithm can be saved
+     */
+    public static boolean supports(String algorithm) {
+        return SUPPORTED_ALGORITHMS.contains(algorithm);
+    }
+
+    /**
+     * Default checkpoint file for a file, next to it
+     */
+    public static Path checkpointFile(Path file) {
+        Path absolute = file.toAbsolutePath();
+        return absolute.resolveSibling(absolute.getFileName() + CHECKPOINT_SUFFIX);
+    }
+
+    /**
+     * Outcome of a resumable hash
+     */
+    public static final class Result {
+        private final byte[] digest;
+        private final long resumedFrom;
+
+        Result(byte[] digest, long resumedFrom) {
+            this.digest = digest;
+            this.resumedFrom = resumedFrom;
+        }
+
+        public byte[] getDigest() {
+            return digest.clone();
+        }
+
+        /**
+         * Offset the hash continued from, 0 if no checkpoint was used
+         */
+        public long getResumedFrom() {
+            return resumedFrom;
+        }
+    }
+
+    /**
+     * Hashes a file using its default checkpoint file
+     */
+    public Result hash(Path file) throws IOException {
+        return hash(file, checkpointFile(file));
+    }
+
+    /**
+     * Hashes a file, continuing from the checkpoint if it matches the file.
+     * If the thread is interrupted, a checkpoint is saved and an
+     * InterruptedIOException is thrown; a later call picks up from there.
+     *
+     * @param file the file to hash
+     * @param checkpointFile where the digest state is saved
+     */
+    public Result hash(Path file, Path checkpointFile) throws IOException {
+        BasicFileAttributes attrs = Files.readAttributes(file, BasicFileAttributes.class);
+        long size = attrs.size();
+        long modified = attrs.lastModifiedTime().toMillis();
+
+        Digest digest;
+        long offset;
+        Checkpoint checkpoint = readCheckpoint(checkpointFile, size, modified);
+        if (checkpoint != null) {
+            try {
+                digest = newDigest(checkpoint.state);
+            } catch (RuntimeException e) {
+                throw new IOException("Corrupt hash checkpoint: " + checkpointFile, e);
+            }
+            offset = checkpoint.offset;
+        } else {
+            digest = newDigest(null);
+            offset = 0;
+        }
+        long resumedFrom = offset;
+        // Bytes before the checkpoint are not read again
+        progress.addTotal(-resumedFrom);
+
+        byte[] buffer = new byte[BUFFER_SIZE];
+        ByteBuffer wrapped = ByteBuffer.wrap(buffer);
+        long nextCheckpoint = offset + checkpointInterval;
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            while (offset < size) {
+                wrapped.clear().limit((int) Math.min(buffer.length, size - offset));
+                int bytesRead;
+                try {
+                    bytesRead = channel.read(wrapped, offset);
+                } catch (ClosedByInterruptException e) {
+                    throw interrupted(checkpointFile, size, modified, offset, digest);
+                }
+                if (bytesRead < 0) {
+                    throw new IOException("File shrank while hashing: " + file);
+                }
+                digest.update(buffer, 0, bytesRead);
+                offset += bytesRead;
+
+                if (Thread.currentThread().isInterrupted()) {
+                    throw interrupted(checkpointFile, size, modified, offset, digest);
+                }
+                try {
+                    progress.advance(bytesRead);
+                } catch (InterruptedIOException e) {
+                    throw interrupted(checkpointFile, size, modified, offset, digest);
+                }
+                if (offset >= nextCheckpoint && offset < size) {
+                    writeCheckpoint(checkpointFile, size, modified, offset, digest);
+                    nextCheckpoint = offset + checkpointInterval;
+                }
+            }
+        }
+
+        byte[] result = new byte[digest.getDigestSize()];
+        digest.doFinal(result, 0);
+        Files.deleteIfExists(checkpointFile);
+        return new Result(result, resumedFrom);
+    }
+
+    /**
+     * Saves a checkpoint after an interrupt or cancellation and returns the exception to throw
+     */
+    private InterruptedIOException interrupted(Path checkpointFile, long size, long modified, long offset,
+                                               Digest digest) throws IOException {
+        // An interrupted thread cannot write through a FileChannel, so clear the flag until the checkpoint is saved
+        boolean wasInterrupted = Thread.interrupted();
+        try {
+            writeCheckpoint(checkpointFile, size, modified, offset, digest);
+        } finally {
+            if (wasInterrupted) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        return new InterruptedIOException("Hashing interrupted after " + offset + " bytes");
+    }
+
+    private static final class Checkpoint {
+        final long offset;
+        final byte[] state;
+
+        Checkpoint(long offset, byte[] state) {
+            this.offset = offset;
+            this.state = state;
+        }
+    }
+
+    /**
+     * Reads a checkpoint, or returns null if there is none or it belongs to
+     * another algorithm or another version of the file
+     */
+    private Checkpoint readCheckpoint(Path checkpointFile, long size, long modified) throws IOException {
+        if (!Files.isRegularFile(checkpointFile)) {
+            return null;
+        }
+        try (InputStream in = Files.newInputStream(checkpointFile)) {
+            DataInputStream data = new DataInputStream(in);
+            byte[] magic = new byte[MAGIC.length];
+            data.readFully(magic);
+            if (!Arrays.equals(magic, MAGIC)) {
+                throw new IOException("Not a hash checkpoint: " + checkpointFile);
+            }
+            if (data.readUnsignedByte() != VERSION || !data.readUTF().equals(algorithm)
+                    || data.readLong() != size || data.readLong() != modified) {
+                return null;
+            }
+            long offset = data.readLong();
+            int stateLength = data.readInt();
+            if (offset < 0 || offset > size || stateLength < 0 || stateLength > 4096) {
+                throw new IOException("Corrupt hash checkpoint: " + checkpointFile);
+            }
+            byte[] state = new byte[stateLength];
+            data.readFully(state);
+            return new Checkpoint(offset, state);
+        } catch (EOFException e) {
+            throw new IOException("Truncated hash checkpoint: " + checkpointFile, e);
+        }
+    }
+
+    /**
+     * Saves the digest state, replacing the checkpoint atomically. The data is
+     * forced to disk before the rename so a crash never leaves a partial checkpoint.
+     */
+    private void writeCheckpoint(Path checkpointFile, long size, long modified, long offset, Digest digest)
+            throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        DataOutputStream data = new DataOutputStream(bytes);
+        data.write(MAGIC);
+        data.writeByte(VERSION);
+        data.writeUTF(algorithm);
+        data.writeLong(size);
+        data.writeLong(modified);
+        data.writeLong(offset);
+        byte[] state = ((EncodableDigest) digest).getEncodedState();
+        data.writeInt(state.length);
+        data.write(state);
+
+        Path absolute = checkpointFile.toAbsolutePath();
+        Path parent = absolute.getParent() != null ? absolute.getParent() : Paths.get(".");
+        Path temp = Files.createTempFile(parent, absolute.getFileName().toString(), ".tmp");
+        try {
+            try (FileChannel channel = FileChannel.open(temp, StandardOpenOption.WRITE)) {
+                ByteBuffer buffer = ByteBuffer.wrap(bytes.toByteArray());
+                while (buffer.hasRemaining()) {
+                    channel.write(buffer);
+                }
+                channel.force(true);
+            }
+            Files.move(temp, absolute, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } finally {
+            Files.deleteIfExists(temp);
+        }
+    }
+
+    /**
+     * Creates the digest, restoring it from an encoded state if one is given
+     */
+    private Digest newDigest(byte[] state) {
+        switch (algorithm) {
+            case "MD5":
+                return state == null ? new MD5Digest() : new MD5Digest(state);
+            case "SHA-1":
+                return state == null ? new SHA1Digest() : new SHA1Digest(state);
+            case "SHA-224":
+                return state == null ? new SHA224Digest() : new SHA224Digest(state);
+            case "SHA-256":
+                return state == null ? new SHA256Digest() : new SHA256Digest(state);
+            case "SHA-384":
+                return state == null ? new SHA384Digest() : new SHA384Digest(state);
+            default:
+                return state == null ? new SHA512Digest() : new SHA512Digest(state);
+        }
+    }
+}
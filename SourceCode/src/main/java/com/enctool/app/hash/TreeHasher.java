@@ -0,0 +1,216 @@
+package com.enctool.app.hash;
+
+import com.enctool.app.util.ProgressTracker;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+
+/**
+ * Parallel Merkle tree hash of a file.
+ * The file is cut into fixed-size leaves that are hashed independently on a
+ * ForkJoinPool and combined into a single root digest, so large files are hashed
+ * on all cores instead of one.
+ * <p>
+ * The output format is fixed so that results are reproducible on any machine and
+ * with any number of threads. It is the Merkle Tree Hash of RFC 6962, section 2.1,
+ * over the leaves of the file:
+ * <pre>
+ *   leaf i   = H(0x00 || bytes [i * leafSize, (i + 1) * leafSize) of the file)
+ *   MTH(one leaf)   = that leaf hash
+ *   MTH(n &gt; 1 leaves) = H(0x01 || MTH(first k leaves) || MTH(remaining n - k leaves))
+ *                     where k is the largest power of two smaller than n
+ * </pre>
+ * H is the selected SHA-2 digest and the last leaf may be shorter than the leaf size.
+ * An empty file has a single empty leaf. The default leaf size is 1 MiB; the root
+ * depends on the leaf size, so it has to be the same to compare results.
+ */
+public class TreeHasher {
+
+    // Default number of file bytes per leaf
+    public static final int DEFAULT_LEAF_SIZE = 1024 * 1024;
+
+    // Algorithms the tree hash is defined for
+    public static final List<String> SUPPORTED_ALGORITHMS = Arrays.asList(
+        "SHA-224", "SHA-256", "SHA-384", "SHA-512"
+    );
+
+    private static final byte LEAF_PREFIX = 0x00;
+    private static final byte NODE_PREFIX = 0x01;
+
+    // Digests and leaf buffers shared by all instances: each thread keeps one
+    // digest per algorithm and its largest leaf buffer
+    private static final ThreadLocal<Map<String, MessageDigest>> DIGESTS = ThreadLocal.withInitial(HashMap::new);
+    private static final ThreadLocal<ByteBuffer> BUFFERS = new ThreadLocal<>();
+
+    private final String algorithm;
+    private final int leafSize;
+    private final ForkJoinPool pool;
+    private ProgressTracker progress = ProgressTracker.NONE;
+
+    public TreeHasher(String algorithm) throws NoSuchAlgorithmException {
+        this(algorithm, DEFAULT_LEAF_SIZE, ForkJoinPool.commonPool());
+    }
+
+    /**
+     * @param algorithm one of the {@link #SUPPORTED_ALGORITHMS}
+     * @param leafSize file bytes per leaf
+     * @param pool the pool the leaves are hashed on
+     */
+    public TreeHasher(String algorithm, int leafSize, ForkJoinPool pool) throws NoSuchAlgorithmException {
+        if (!supports(algorithm)) {
+            throw new NoSuchAlgorithmException("Tree hashing is not defined for " + algorithm);
+        }
+        if (leafSize <= 0) {
+            throw new IllegalArgumentException("Leaf size must be positive");
+        }
+        MessageDigest.getInstance(algorithm);
+        this.algorithm = algorithm;
+        this.leafSize = leafSize;
+        this.pool = pool;
+    }
+
+    /**
+     * Reports hashed bytes to the tracker, which can also cancel the operation
+     *
+     * @return this hasher
+     */
+    public TreeHasher withProgress(ProgressTracker progress) {
+        this.progress = progress;
+        return this;
+    }
+
+    /**
+     * Checks whether the tree hash is defined for the given algorithm
+     */
+    public static boolean supports(String algorithm) {
+        return SUPPORTED_ALGORITHMS.contains(algorithm);
+    }
+
+    /**
+     * Computes the tree hash of a file
+     */
+    public byte[] hash(Path file) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            return hash(channel, 0, channel.size());
+        }
+    }
+
+    /**
+     * Computes the tree hash of a region of a channel.
+     *
+     * @param channel the channel to read
+     * @param offset position of the first byte
+     * @param length number of bytes to hash
+     */
+    public byte[] hash(FileChannel channel, long offset, long length) throws IOException {
+        long leaves = Math.max(1, (length + leafSize - 1) / leafSize);
+        try {
+            return pool.invoke(new Subtree(channel, offset, length, 0, leaves));
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+    }
+
+    @Override
+    public String toString() {
+        return "tree-" + algorithm + " (" + leafSize + "-byte leaves)";
+    }
+
+    private byte[] hashLeaf(FileChannel channel, long position, int length) throws IOException {
+        ByteBuffer buffer = BUFFERS.get();
+        if (buffer == null || buffer.capacity() < length) {
+            buffer = ByteBuffer.allocate(leafSize);
+            BUFFERS.set(buffer);
+        }
+        buffer.clear().limit(length);
+        while (buffer.hasRemaining()) {
+            if (channel.read(buffer, position + buffer.position()) < 0) {
+                throw new EOFException("File ended before the expected length");
+            }
+        }
+        buffer.flip();
+
+        MessageDigest digest = digest();
+        digest.update(LEAF_PREFIX);
+        digest.update(buffer);
+        progress.advance(length);
+        return digest.digest();
+    }
+
+    private byte[] hashNode(byte[] left, byte[] right) {
+        MessageDigest digest = digest();
+        digest.update(NODE_PREFIX);
+        digest.update(left);
+        digest.update(right);
+        return digest.digest();
+    }
+
+    /**
+     * Returns the digest of the current thread for this hasher's algorithm
+     */
+    private MessageDigest digest() {
+        return DIGESTS.get().computeIfAbsent(algorithm, name -> {
+            try {
+                return MessageDigest.getInstance(name);
+            } catch (NoSuchAlgorithmException e) {
+                // Checked in the constructor
+                throw new IllegalStateException(e);
+            }
+        });
+    }
+
+    /**
+     * Computes the Merkle Tree Hash of a range of leaves
+     */
+    private final class Subtree extends RecursiveTask<byte[]> {
+        private static final long serialVersionUID = 1L;
+
+        private final transient FileChannel channel;
+        private final long offset;
+        private final long length;
+        private final long first;
+        private final long end;
+
+        Subtree(FileChannel channel, long offset, long length, long first, long end) {
+            this.channel = channel;
+            this.offset = offset;
+            this.length = length;
+            this.first = first;
+            this.end = end;
+        }
+
+        @Override
+        protected byte[] compute() {
+            long count = end - first;
+            if (count == 1) {
+                long start = first * leafSize;
+                try {
+                    return hashLeaf(channel, offset + start, (int) Math.min(leafSize, length - start));
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            }
+
+            // Largest power of two smaller than count
+            long split = Long.highestOneBit(count - 1);
+            Subtree left = new Subtree(channel, offset, length, first, first + split);
+            Subtree right = new Subtree(channel, offset, length, first + split, end);
+            left.fork();
+            byte[] rightHash = right.compute();
+            return hashNode(left.join(), rightHash);
+        }
+    }
+}
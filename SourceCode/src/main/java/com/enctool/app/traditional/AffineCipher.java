@@ -1,5 +1,8 @@
 package com.enctool.app.traditional;
 
+import java.io.IOException;
+import java.io.Reader;
+import java.io.Writer;
 import java.security.SecureRandom;
 
 /**
@@ -10,10 +13,6 @@ import java.security.SecureRandom;
  */
 public class AffineCipher implements CipherAlgorithm {
     
-    // Define alphabets
-    private static final String ENGLISH_ALPHABET = "ABCDEFGHIJKLMNOPQRSTUVWXYZ";
-    private static final String VIETNAMESE_ALPHABET = "AĂÂBCDĐEÊGHIKLMNOÔƠPQRSTUƯVXY";
-    
     @Override
     public String encrypt(String input, String key, String language) {
         return process(input, key, language, true);
@@ -24,10 +23,19 @@ public class AffineCipher implements CipherAlgorithm {
         return process(input, key, language, false);
     }
     
+    @Override
+    public void encrypt(Reader input, Writer output, String key, String language) throws IOException {
+        prepare(key, language).encrypt(input, output);
+    }
+    
+    @Override
+    public void decrypt(Reader input, Writer output, String key, String language) throws IOException {
+        prepare(key, language).decrypt(input, output);
+    }
+    
     @Override
     public String generateKey(String language) {
-        String alphabet = getAlphabet(language);
-        int alphabetSize = alphabet.length();
+        int alphabetSize = Alphabet.forLanguage(language).size();
         
         SecureRandom secureRandom = new SecureRandom();
         
@@ -44,14 +52,30 @@ public class AffineCipher implements CipherAlgorithm {
     
     @Override
     public String getKeyTooltip(String language) {
-        String alphabetSize = language.equals("English") ? "26" : String.valueOf(VIETNAMESE_ALPHABET.length());
+        String alphabetSize = language.equals("English") ? "26" : String.valueOf(Alphabet.VIETNAMESE.size());
         return "Enter two numbers separated by a comma (a,b). 'a' must be coprime with " + alphabetSize;
     }
     
     private String process(String input, String key, String language, boolean encrypt) {
+        PreparedCipher cipher;
+        try {
+            cipher = prepare(key, language);
+        } catch (IllegalArgumentException e) {
+            return "Error: " + e.getMessage();
+        }
+        return encrypt ? cipher.encrypt(input) : cipher.decrypt(input);
+    }
+    
+    /**
+     * Builds the substitution tables of the affine function and its inverse
+     * 
+     * @throws IllegalArgumentException if the key is not a valid 'a,b' pair
+     */
+    @Override
+    public PreparedCipher prepare(String key, String language) {
         String[] params = key.split(",");
         if (params.length != 2) {
-            return "Error: Affine Cipher key must be in the format 'a,b' (e.g., '5,8')";
+            throw new IllegalArgumentException("Affine Cipher key must be in the format 'a,b' (e.g., '5,8')");
         }
         
         int a, b;
@@ -59,61 +83,28 @@ public class AffineCipher implements CipherAlgorithm {
             a = Integer.parseInt(params[0]);
             b = Integer.parseInt(params[1]);
         } catch (NumberFormatException e) {
-            return "Error: Key parameters must be numbers for Affine Cipher";
+            throw new IllegalArgumentException("Key parameters must be numbers for Affine Cipher");
         }
         
-        String alphabet = getAlphabet(language);
-        int m = alphabet.length();
+        Alphabet alphabet = Alphabet.forLanguage(language);
+        int m = alphabet.size();
         
         if (gcd(a, m) != 1) {
-            return "Error: First parameter 'a' must be coprime with the alphabet size (" + m + ")";
+            throw new IllegalArgumentException(
+                "First parameter 'a' must be coprime with the alphabet size (" + m + ")");
         }
         
-        StringBuilder result = new StringBuilder();
+        int aInverse = findModInverse(a, m);
         
-        if (encrypt) {
-            for (char c : input.toCharArray()) {
-                String upperC = String.valueOf(c).toUpperCase();
-                int index = alphabet.indexOf(upperC);
-                
-                if (index != -1) {
-                    int encryptedIndex = (a * index + b) % m;
-                    char encryptedChar = alphabet.charAt(encryptedIndex);
-                    
-                    if (Character.isLowerCase(c)) {
-                        encryptedChar = Character.toLowerCase(encryptedChar);
-                    }
-                    
-                    result.append(encryptedChar);
-                } else {
-                    result.append(c);
-                }
-            }
-        } else {
-            int aInverse = findModInverse(a, m);
-            
-            for (char c : input.toCharArray()) {
-                String upperC = String.valueOf(c).toUpperCase();
-                int index = alphabet.indexOf(upperC);
-                
-                if (index != -1) {
-                    int decryptedIndex = (aInverse * (index - b + m)) % m;
-                    if (decryptedIndex < 0) decryptedIndex += m;
-                    
-                    char decryptedChar = alphabet.charAt(decryptedIndex);
-                    
-                    if (Character.isLowerCase(c)) {
-                        decryptedChar = Character.toLowerCase(decryptedChar);
-                    }
-                    
-                    result.append(decryptedChar);
-                } else {
-                    result.append(c);
-                }
-            }
+        // Output letter of every letter; characters not in the alphabet stay unchanged
+        int[] encryptMapping = new int[m];
+        int[] decryptMapping = new int[m];
+        for (int index = 0; index < m; index++) {
+            encryptMapping[index] = Math.floorMod(a * index + b, m);
+            decryptMapping[index] = Math.floorMod(aInverse * (index - b + m), m);
         }
         
-        return result.toString();
+        return new SubstitutionTables(alphabet, encryptMapping, decryptMapping);
     }
     
     private int gcd(int a, int b) {
@@ -129,8 +120,4 @@ public class AffineCipher implements CipherAlgorithm {
         }
         return 1;
     }
-    
-    private String getAlphabet(String language) {
-        return language.equals("English") ? ENGLISH_ALPHABET : VIETNAMESE_ALPHABET;
-    }
 }
\ No newline at end of file
@@ -0,0 +1,127 @@
+package com.enctool.app.traditional;
+
+import java.util.Arrays;
+
+/**
+ * Letters of a cipher alphabet, with lookup tables for the per-character work
+ * of the classical ciphers. Finding a character's letter index is a single
+ * array access instead of upper-casing it into a new String and scanning the
+ * alphabet, and ciphers that replace each letter by a fixed other letter get a
+ * table that maps each char directly to its output.
+ * <p>
+ * A char belongs to the alphabet if its upper-case form is one of the letters,
+ * so lower-case input is found too; the ciphers keep the case of each letter.
+ */
+final class Alphabet {
+
+    static final Alphabet ENGLISH = new Alphabet("ABCDEFGHIJKLMNOPQRSTUVWXYZ");
+    static final Alphabet VIETNAMESE = new Alphabet("AĂÂBCDĐEÊGHIKLMNOÔƠPQRSTUƯVXY");
+
+    private final String letters;
+    private final char[] lowerCaseLetters;
+    // Letter index of every char, -1 for chars outside the alphabet
+    private final byte[] indexes = new byte[Character.MAX_VALUE + 1];
+    // The chars that belong to the alphabet, in either case, in ascending order
+    private final char[] members;
+
+    private Alphabet(String letters) {
+        this.letters = letters;
+        lowerCaseLetters = new char[letters.length()];
+        for (int i = 0; i < letters.length(); i++) {
+            lowerCaseLetters[i] = Character.toLowerCase(letters.charAt(i));
+        }
+
+        Arrays.fill(indexes, (byte) -1);
+        StringBuilder found = new StringBuilder();
+        for (int c = 0; c <= Character.MAX_VALUE; c++) {
+            int index = letters.indexOf(Character.toUpperCase((char) c));
+            if (index >= 0) {
+                indexes[c] = (byte) index;
+                found.append((char) c);
+            }
+        }
+        members = found.toString().toCharArray();
+    }
+
+    /**
+     * Alphabet of a language as offered in the UI, "English" or "Vietnamese"
+     */
+    static Alphabet forLanguage(String language) {
+        return language.equals("English") ? ENGLISH : VIETNAMESE;
+    }
+
+    int size() {
+        return letters.length();
+    }
+
+    /**
+     * Upper-case letter at an index
+     */
+    char charAt(int index) {
+        return letters.charAt(index);
+    }
+
+    /**
+     * Index of the letter a char stands for, in either case, or -1 if it is not in the alphabet
+     */
+    int indexOf(char c) {
+        return indexes[c];
+    }
+
+    boolean contains(char c) {
+        return indexes[c] >= 0;
+    }
+
+    /**
+     * Letter at an index in the case of another char
+     */
+    char letter(int index, char caseOf) {
+        return Character.isLowerCase(caseOf) ? lowerCaseLetters[index] : letters.charAt(index);
+    }
+
+    /**
+     * Builds the table of a cipher that replaces each letter by another: the
+     * entry of every char of letter {@code i} is letter {@code mapping[i]} in the
+     * same case, every other char maps to itself. The table ends after the
+     * highest char of the alphabet, which keeps it small; chars beyond it
+     * stay unchanged.
+     *
+     * @param mapping the output letter index for each letter index
+     */
+    char[] substitution(int[] mapping) {
+        char[] table = new char[members[members.length - 1] + 1];
+        for (int c = 0; c < table.length; c++) {
+            table[c] = (char) c;
+        }
+        for (char c : members) {
+            table[c] = letter(mapping[indexes[c]], c);
+        }
+        return table;
+    }
+
+    /**
+     * Applies a substitution table to a text
+     */
+    static String substitute(String input, char[] table) {
+        char[] chars = input.toCharArray();
+        substitute(chars, 0, chars.length, table);
+        return new String(chars);
+    }
+
+    /**
+     * Applies a substitution table to a range of an array, in place
+     */
+    static void substitute(char[] chars, int from, int to, char[] table) {
+        for (int i = from; i < to; i++) {
+            char c = chars[i];
+            if (c < table.length) {
+                chars[i] = table[c];
+            }
+        }
+    }
+
+    @Override
+    public String toString() {
+        return letters;
+    }
+}
@@ -1,5 +1,8 @@
 package com.enctool.app.traditional;
 
+import java.io.IOException;
+import java.io.Reader;
+import java.io.Writer;
 import java.security.SecureRandom;
 
 /**
@@ -9,10 +12,6 @@ import java.security.SecureRandom;
  */
 public class CaesarCipher implements CipherAlgorithm {
     
-    // Define alphabets
-    private static final String ENGLISH_ALPHABET = "ABCDEFGHIJKLMNOPQRSTUVWXYZ";
-    private static final String VIETNAMESE_ALPHABET = "AĂÂBCDĐEÊGHIKLMNOÔƠPQRSTUƯVXY";
-    
     @Override
     public String encrypt(String input, String key, String language) {
         return process(input, key, language, true);
@@ -23,10 +22,19 @@ public class CaesarCipher implements CipherAlgorithm {
         return process(input, key, language, false);
     }
     
+    @Override
+    public void encrypt(Reader input, Writer output, String key, String language) throws IOException {
+        prepare(key, language).encrypt(input, output);
+    }
+    
+    @Override
+    public void decrypt(Reader input, Writer output, String key, String language) throws IOException {
+        prepare(key, language).decrypt(input, output);
+    }
+    
     @Override
     public String generateKey(String language) {
-        String alphabet = getAlphabet(language);
-        int alphabetSize = alphabet.length();
+        int alphabetSize = Alphabet.forLanguage(language).size();
         
         // Generate a random shift value between 1 and alphabetSize-1
         SecureRandom secureRandom = new SecureRandom();
@@ -39,47 +47,39 @@ public class CaesarCipher implements CipherAlgorithm {
     }
     
     private String process(String input, String key, String language, boolean encrypt) {
+        PreparedCipher cipher;
+        try {
+            cipher = prepare(key, language);
+        } catch (IllegalArgumentException e) {
+            return "Error: " + e.getMessage();
+        }
+        return encrypt ? cipher.encrypt(input) : cipher.decrypt(input);
+    }
+    
+    /**
+     * Builds the substitution tables of a shift
+     * 
+     * @throws IllegalArgumentException if the key is not a number
+     */
+    @Override
+    public PreparedCipher prepare(String key, String language) {
         int shift;
         try {
             shift = Integer.parseInt(key);
         } catch (NumberFormatException e) {
-            return "Error: Key must be a number for Caesar Cipher";
+            throw new IllegalArgumentException("Key must be a number for Caesar Cipher");
         }
         
-        if (!encrypt) {
-            shift = -shift; // For decryption, reverse the shift
-        }
-        
-        String alphabet = getAlphabet(language);
-        int alphabetSize = alphabet.length();
+        Alphabet alphabet = Alphabet.forLanguage(language);
+        int alphabetSize = alphabet.size();
         
-        StringBuilder result = new StringBuilder();
-        for (char c : input.toCharArray()) {
-            String upperC = String.valueOf(c).toUpperCase();
-            int index = alphabet.indexOf(upperC);
-            
-            if (index != -1) {
-                // Character is in the alphabet
-                int newIndex = (index + shift) % alphabetSize;
-                if (newIndex < 0) newIndex += alphabetSize; // Handle negative shifts
-                
-                char shiftedChar = alphabet.charAt(newIndex);
-                
-                // Preserve case
-                if (Character.isLowerCase(c)) {
-                    shiftedChar = Character.toLowerCase(shiftedChar);
-                }
-                
-                result.append(shiftedChar);
-            } else {
-                // Character not in alphabet, leave unchanged
-                result.append(c);
-            }
+        // Shifted letter of every letter; characters not in the alphabet stay unchanged
+        int[] encryptMapping = new int[alphabetSize];
+        int[] decryptMapping = new int[alphabetSize];
+        for (int index = 0; index < alphabetSize; index++) {
+            encryptMapping[index] = Math.floorMod(index + shift, alphabetSize);
+            decryptMapping[index] = Math.floorMod(index - shift, alphabetSize); // For decryption, reverse the shift
         }
-        return result.toString();
-    }
-    
-    private String getAlphabet(String language) {
-        return language.equals("English") ? ENGLISH_ALPHABET : VIETNAMESE_ALPHABET;
+        return new SubstitutionTables(alphabet, encryptMapping, decryptMapping);
     }
-}
\ No newline at end of file
+}
@@ -1,5 +1,9 @@
 package com.enctool.app.traditional;
 
+import java.io.IOException;
+import java.io.Reader;
+import java.io.Writer;
+
 /**
  * Interface for traditional cipher algorithms.
  * All traditional cipher implementations should implement this interface.
@@ -26,6 +30,79 @@ public interface CipherAlgorithm {
      */
     String decrypt(String input, String key, String language);
     
+    /**
+     * Encrypts the text read from a reader and writes the result to a writer.
+     * The ciphers in this package work through the text in chunks and carry
+     * their state, such as the key position, from one chunk to the next, so
+     * the text does not have to fit in memory. Neither stream is closed.
+     * The default implementation reads the whole text and calls
+     * {@link #encrypt(String, String, String)}.
+     * 
+     * @param input The text to encrypt
+     * @param output Receives the encrypted text
+     * @param key The encryption key
+     * @param language The language of the input text (e.g., "English", "Vietnamese")
+     * @throws IllegalArgumentException if the key is invalid
+     * @throws IOException if reading or writing fails
+     */
+    default void encrypt(Reader input, Writer output, String key, String language) throws IOException {
+        output.write(encrypt(TextStreams.readAll(input), key, language));
+        output.flush();
+    }
+    
+    /**
+     * Decrypts the text read from a reader and writes the result to a writer,
+     * like {@link #encrypt(Reader, Writer, String, String)}.
+     * 
+     * @param input The text to decrypt
+     * @param output Receives the decrypted text
+     * @param key The decryption key
+     * @param language The language of the input text (e.g., "English", "Vietnamese")
+     * @throws IllegalArgumentException if the key is invalid
+     * @throws IOException if reading or writing fails
+     */
+    default void decrypt(Reader input, Writer output, String key, String language) throws IOException {
+        output.write(decrypt(TextStreams.readAll(input), key, language));
+        output.flush();
+    }
+    
+    /**
+     * Parses and checks a key once, for applying it to many texts. The ciphers
+     * in this package also compute everything the key determines, such as
+     * inverse matrices and substitution tables. The default implementation
+     * does no work up front and passes the key to the methods above on every
+     * use, so an invalid key is only reported then.
+     * 
+     * @param key The key
+     * @param language The language of the texts (e.g., "English", "Vietnamese")
+     * @return The cipher bound to the key, immutable and safe to share between threads
+     * @throws IllegalArgumentException if the key is invalid
+     */
+    default PreparedCipher prepare(String key, String language) {
+        CipherAlgorithm algorithm = this;
+        return new PreparedCipher() {
+            @Override
+            public String encrypt(String input) {
+                return algorithm.encrypt(input, key, language);
+            }
+            
+            @Override
+            public String decrypt(String input) {
+                return algorithm.decrypt(input, key, language);
+            }
+            
+            @Override
+            public void encrypt(Reader input, Writer output) throws IOException {
+                algorithm.encrypt(input, output, key, language);
+            }
+            
+            @Override
+            public void decrypt(Reader input, Writer output) throws IOException {
+                algorithm.decrypt(input, output, key, language);
+            }
+        };
+    }
+    
     /**
      * Generates a random key suitable for this cipher algorithm.
      * 
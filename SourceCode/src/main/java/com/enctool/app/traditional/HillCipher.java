@@ -1,8 +1,12 @@
 package com.enctool.app.traditional;
 
+import java.io.IOException;
+import java.io.Reader;
+import java.io.StringWriter;
+import java.io.UncheckedIOException;
+import java.io.Writer;
 import java.security.SecureRandom;
-import java.util.ArrayList;
-import java.util.List;
+import java.util.Arrays;
 
 /**
  * Implementation of the Hill cipher algorithm.
@@ -11,10 +15,6 @@ import java.util.List;
  */
 public class HillCipher implements CipherAlgorithm {
 
-    // Define alphabets
-    private static final String ENGLISH_ALPHABET = "ABCDEFGHIJKLMNOPQRSTUVWXYZ";
-    private static final String VIETNAMESE_ALPHABET = "AĂÂBCDĐEÊGHIKLMNOÔƠPQRSTUƯVXY";
-
     @Override
     public String encrypt(String input, String key, String language) {
         return process(input, key, language, true);
@@ -25,10 +25,19 @@ public class HillCipher implements CipherAlgorithm {
         return process(input, key, language, false);
     }
 
+    @Override
+    public void encrypt(Reader input, Writer output, String key, String language) throws IOException {
+        prepare(key, language).encrypt(input, output);
+    }
+
+    @Override
+    public void decrypt(Reader input, Writer output, String key, String language) throws IOException {
+        prepare(key, language).decrypt(input, output);
+    }
+
     @Override
     public String generateKey(String language) {
-        String alphabet = getAlphabet(language);
-        int alphabetSize = alphabet.length();
+        int alphabetSize = Alphabet.forLanguage(language).size();
 
         SecureRandom secureRandom = new SecureRandom();
 
@@ -53,20 +62,40 @@ public class HillCipher implements CipherAlgorithm {
     }
 
     private String process(String input, String key, String language, boolean encrypt) {
-        String alphabet = getAlphabet(language);
-        int m = alphabet.length();
+        PreparedCipher cipher;
+        try {
+            cipher = prepare(key, language);
+        } catch (IllegalArgumentException e) {
+            return "Error: " + e.getMessage();
+        }
+        try {
+            return encrypt ? cipher.encrypt(input) : cipher.decrypt(input);
+        } catch (RuntimeException e) {
+            return "Error processing Hill Cipher: " + e.getMessage();
+        }
+    }
+
+    /**
+     * Parses the key matrix and computes its inverse
+     *
+     * @throws IllegalArgumentException if the key is not an invertible square matrix
+     */
+    @Override
+    public PreparedCipher prepare(String key, String language) {
+        Alphabet alphabet = Alphabet.forLanguage(language);
+        int m = alphabet.size();
 
         // Parse the matrix from the key
         String[] rows = key.split(";");
         if (rows.length < 2) {
-            return "Error: Hill Cipher key must be a matrix (e.g., '2,3;1,4' for a 2x2 matrix)";
+            throw new IllegalArgumentException("Hill Cipher key must be a matrix (e.g., '2,3;1,4' for a 2x2 matrix)");
         }
 
         String[] firstRowElements = rows[0].split(",");
         int n = firstRowElements.length; // Matrix dimension
 
         if (rows.length != n) {
-            return "Error: Hill Cipher requires a square matrix";
+            throw new IllegalArgumentException("Hill Cipher requires a square matrix");
         }
 
         int[][] matrix = new int[n][n];
@@ -76,7 +105,7 @@ public class HillCipher implements CipherAlgorithm {
             for (int i = 0; i < n; i++) {
                 String[] elements = rows[i].split(",");
                 if (elements.length != n) {
-                    return "Error: All rows must have the same number of elements";
+                    throw new IllegalArgumentException("All rows must have the same number of elements");
                 }
 
                 for (int j = 0; j < n; j++) {
@@ -84,129 +113,251 @@ public class HillCipher implements CipherAlgorithm {
                     if (matrix[i][j] < 0) matrix[i][j] += m;
                 }
             }
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("Invalid matrix elements in Hill Cipher key");
+        }
 
-            // Check if matrix is invertible
-            int det = determinant(matrix, n) % m;
-            if (det < 0) det += m;
-            if (det == 0 || gcd(det, m) != 1) {
-                return "Error: Matrix must be invertible (determinant must be coprime with alphabet size)";
-            }
+        // Check if matrix is invertible
+        int det = determinant(matrix, n) % m;
+        if (det < 0) det += m;
+        if (det == 0 || gcd(det, m) != 1) {
+            throw new IllegalArgumentException(
+                "Matrix must be invertible (determinant must be coprime with alphabet size)");
+        }
 
-            // Track positions of non-alphabet characters for preservation
-            List<Integer> nonAlphabetPositions = new ArrayList<>();
-            List<Character> nonAlphabetChars = new ArrayList<>();
-
-            // Extract only alphabet characters while keeping track of other characters
-            StringBuilder cleanedInput = new StringBuilder();
-            for (int i = 0; i < input.length(); i++) {
-                char c = input.charAt(i);
-                String upperC = String.valueOf(c).toUpperCase();
-                if (alphabet.contains(upperC)) {
-                    cleanedInput.append(upperC);
-                } else {
-                    nonAlphabetPositions.add(i);
-                    nonAlphabetChars.add(c);
-                }
-            }
+        // Find inverse matrix
+        int[][] inverseMatrix = new int[n][n];
+        int detInverse = findModInverse(det, m);
+
+        // Calculate adjugate matrix
+        int[][] adjMatrix = adjugate(matrix, n);
 
-            // Pad the input if needed
-            while (cleanedInput.length() % n != 0) {
-                cleanedInput.append(alphabet.charAt(0)); // Pad with first letter of alphabet
+        // Calculate inverse matrix
+        for (int i = 0; i < n; i++) {
+            for (int j = 0; j < n; j++) {
+                inverseMatrix[i][j] = (adjMatrix[i][j] * detInverse) % m;
+                if (inverseMatrix[i][j] < 0) inverseMatrix[i][j] += m;
             }
+        }
+        return new KeyMatrices(alphabet, matrix, inverseMatrix);
+    }
 
-            StringBuilder processedText = new StringBuilder();
+    /**
+     * The key matrix and its inverse
+     */
+    private static final class KeyMatrices implements SegmentedCipher {
+        private final Alphabet alphabet;
+        private final int[][] matrix;
+        private final int[][] inverseMatrix;
+
+        KeyMatrices(Alphabet alphabet, int[][] matrix, int[][] inverseMatrix) {
+            this.alphabet = alphabet;
+            this.matrix = matrix;
+            this.inverseMatrix = inverseMatrix;
+        }
 
-            if (encrypt) {
-                // Encrypt
-                for (int i = 0; i < cleanedInput.length(); i += n) {
-                    // Extract the block
-                    int[] block = new int[n];
-                    for (int j = 0; j < n; j++) {
-                        block[j] = alphabet.indexOf(cleanedInput.charAt(i + j));
-                    }
+        @Override
+        public String encrypt(String input) {
+            return transform(input, matrix);
+        }
 
-                    // Multiply block by matrix
-                    int[] encryptedBlock = new int[n];
-                    for (int j = 0; j < n; j++) {
-                        int sum = 0;
-                        for (int k = 0; k < n; k++) {
-                            sum += matrix[j][k] * block[k];
-                        }
-                        encryptedBlock[j] = sum % m;
-                    }
+        @Override
+        public String decrypt(String input) {
+            return transform(input, inverseMatrix);
+        }
+
+        @Override
+        public void encrypt(Reader input, Writer output) throws IOException {
+            transform(input, output, matrix);
+        }
 
-                    // Convert to characters
-                    for (int value : encryptedBlock) {
-                        processedText.append(alphabet.charAt(value));
+        @Override
+        public void decrypt(Reader input, Writer output) throws IOException {
+            transform(input, output, inverseMatrix);
+        }
+
+        /**
+         * Blocks of letters may cross segment boundaries, so every block is
+         * enciphered by the segment its first letter is in
+         */
+        @Override
+        public String transform(char[] text, boolean encrypt, SegmentRunner runner) {
+            int[][] matrix = encrypt ? this.matrix : inverseMatrix;
+            int n = matrix.length;
+            int[] lettersBefore = runner.prefixCounts((from, to) -> {
+                int letters = 0;
+                for (int i = from; i < to; i++) {
+                    if (alphabet.contains(text[i])) {
+                        letters++;
                     }
                 }
-            } else {
-                // Decrypt
-                // Find inverse matrix
-                int[][] inverseMatrix = new int[n][n];
-                int detInverse = findModInverse(det, m);
-
-                // Calculate adjugate matrix
-                int[][] adjMatrix = adjugate(matrix, n);
-
-                // Calculate inverse matrix
-                for (int i = 0; i < n; i++) {
-                    for (int j = 0; j < n; j++) {
-                        inverseMatrix[i][j] = (adjMatrix[i][j] * detInverse) % m;
-                        if (inverseMatrix[i][j] < 0) inverseMatrix[i][j] += m;
+                return letters;
+            });
+            int lastLetters = lettersBefore[runner.segments()] % n;
+            char[] padding = new char[lastLetters == 0 ? 0 : n - lastLetters];
+
+            runner.forEach((segment, from, to) -> {
+                int[] positions = new int[n];
+                int[] block = new int[n];
+                int[] product = new int[n];
+                // Letters that complete a block begun in an earlier segment
+                int skip = (n - lettersBefore[segment] % n) % n;
+                int i = from;
+                while (i < to) {
+                    if (!alphabet.contains(text[i])) {
+                        i++;
+                    } else if (skip > 0) {
+                        skip--;
+                        i++;
+                    } else {
+                        // A block starts here and may end in a later segment
+                        int count = 0;
+                        for (; count < n && i < text.length; i++) {
+                            int index = alphabet.indexOf(text[i]);
+                            if (index != -1) {
+                                positions[count] = i;
+                                block[count++] = index;
+                            }
+                        }
+                        Arrays.fill(block, count, n, 0);
+                        multiply(matrix, block, product, alphabet.size());
+                        for (int k = 0; k < count; k++) {
+                            text[positions[k]] = alphabet.charAt(product[k]);
+                        }
+                        for (int k = count; k < n; k++) {
+                            padding[k - count] = alphabet.charAt(product[k]);
+                        }
                     }
                 }
+            });
+            return new StringBuilder(text.length + padding.length).append(text).append(padding).toString();
+        }
 
-                // Process blocks
-                for (int i = 0; i < cleanedInput.length(); i += n) {
-                    // Extract the block
-                    int[] block = new int[n];
-                    for (int j = 0; j < n; j++) {
-                        block[j] = alphabet.indexOf(cleanedInput.charAt(i + j));
-                    }
+        private String transform(String input, int[][] matrix) {
+            char[] chars = input.toCharArray();
+            StringWriter output = new StringWriter(chars.length);
+            try {
+                BlockWriter blocks = new BlockWriter(alphabet, matrix, output, chars.length);
+                blocks.write(chars, chars.length);
+                blocks.finish();
+            } catch (IOException e) {
+                // A StringWriter does not throw
+                throw new UncheckedIOException(e);
+            }
+            return output.toString();
+        }
 
-                    // Multiply block by inverse matrix
-                    int[] decryptedBlock = new int[n];
-                    for (int j = 0; j < n; j++) {
-                        int sum = 0;
-                        for (int k = 0; k < n; k++) {
-                            sum += inverseMatrix[j][k] * block[k];
-                        }
-                        decryptedBlock[j] = sum % m;
-                    }
+        private void transform(Reader input, Writer output, int[][] matrix) throws IOException {
+            BlockWriter blocks = new BlockWriter(alphabet, matrix, output, TextStreams.CHUNK_SIZE);
+            char[] buffer = new char[TextStreams.CHUNK_SIZE];
+            int length;
+            while ((length = input.read(buffer)) != -1) {
+                blocks.write(buffer, length);
+            }
+            blocks.finish();
+        }
+    }
+
+    /**
+     * Multiplies the text block by block with the key matrix. Letters are
+     * replaced by the upper-case letters of their block; other characters
+     * keep their position. The characters of an incomplete block are held
+     * back until its last letter arrives, possibly in a later chunk, and the
+     * final block is padded with the first letter of the alphabet.
+     */
+    private static final class BlockWriter {
+        private final Alphabet alphabet;
+        private final int[][] matrix;
+        private final Writer output;
+        private final int[] block;
+        private final int[] product;
+        // Characters not written yet; those from blockStart on belong to the incomplete block
+        private char[] pending;
+        private int pendingLength;
+        private int blockStart;
+        private int letters;
+
+        /**
+         * @param capacity the size of the chunks that will be written
+         */
+        BlockWriter(Alphabet alphabet, int[][] matrix, Writer output, int capacity) {
+            this.alphabet = alphabet;
+            this.matrix = matrix;
+            this.output = output;
+            pending = new char[capacity + matrix.length];
+            block = new int[matrix.length];
+            product = new int[matrix.length];
+        }
 
-                    // Convert to characters
-                    for (int value : decryptedBlock) {
-                        processedText.append(alphabet.charAt(value));
+        void write(char[] chars, int length) throws IOException {
+            if (pendingLength + length > pending.length) {
+                pending = Arrays.copyOf(pending, Math.max(pending.length * 2, pendingLength + length));
+            }
+            for (int i = 0; i < length; i++) {
+                char c = chars[i];
+                pending[pendingLength++] = c;
+                int index = alphabet.indexOf(c);
+                if (index != -1) {
+                    block[letters++] = index;
+                    if (letters == block.length) {
+                        encipherBlock(letters);
                     }
+                } else if (letters == 0) {
+                    blockStart = pendingLength;
                 }
             }
 
-            // Remove padding if decrypting
-            String result = processedText.toString();
-
-            // Reinsert non-alphabet characters at their original positions
-            if (!nonAlphabetPositions.isEmpty()) {
-                StringBuilder finalResult = new StringBuilder(result);
+            output.write(pending, 0, blockStart);
+            System.arraycopy(pending, blockStart, pending, 0, pendingLength - blockStart);
+            pendingLength -= blockStart;
+            blockStart = 0;
+        }
 
-                // Insert non-alphabet characters at their positions
-                for (int i = 0; i < nonAlphabetPositions.size(); i++) {
-                    int pos = nonAlphabetPositions.get(i);
-                    // Adjust position for already inserted characters and truncate if exceeding
-                    if (pos <= finalResult.length()) {
-                        finalResult.insert(pos, nonAlphabetChars.get(i));
-                    }
+        /**
+         * Pads and writes the last block
+         */
+        void finish() throws IOException {
+            int count = letters;
+            if (count == 0) {
+                output.write(pending, 0, pendingLength);
+            } else {
+                Arrays.fill(block, count, block.length, 0);
+                encipherBlock(count);
+                output.write(pending, 0, pendingLength);
+                // The padding letters follow all other characters
+                for (int i = count; i < block.length; i++) {
+                    output.write(alphabet.charAt(product[i]));
                 }
-
-                return finalResult.toString();
             }
+            output.flush();
+        }
 
-            return result;
+        /**
+         * Replaces the first {@code count} letters of the pending block by the block times the matrix
+         */
+        private void encipherBlock(int count) {
+            multiply(matrix, block, product, alphabet.size());
 
-        } catch (NumberFormatException e) {
-            return "Error: Invalid matrix elements in Hill Cipher key";
-        } catch (Exception e) {
-            return "Error processing Hill Cipher: " + e.getMessage();
+            for (int i = blockStart, next = 0; next < count; i++) {
+                if (alphabet.contains(pending[i])) {
+                    pending[i] = alphabet.charAt(product[next++]);
+                }
+            }
+            blockStart = pendingLength;
+            letters = 0;
+        }
+    }
+
+    /**
+     * Computes matrix times block modulo m into product
+     */
+    private static void multiply(int[][] matrix, int[] block, int[] product, int m) {
+        for (int j = 0; j < block.length; j++) {
+            int sum = 0;
+            for (int k = 0; k < block.length; k++) {
+                sum += matrix[j][k] * block[k];
+            }
+            product[j] = sum % m;
         }
     }
 
@@ -272,8 +423,4 @@ public class HillCipher implements CipherAlgorithm {
         }
         return 1;
     }
-
-    private String getAlphabet(String language) {
-        return language.equals("English") ? ENGLISH_ALPHABET : VIETNAMESE_ALPHABET;
-    }
 }
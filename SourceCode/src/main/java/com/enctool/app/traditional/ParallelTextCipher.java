@@ -0,0 +1,79 @@
+package com.enctool.app.traditional;
+
+import java.util.concurrent.ForkJoinPool;
+
+/**
+ * Multi-threaded encryption of large texts with a classic cipher.
+ * The text is cut into segments of consecutive characters that are processed
+ * on a ForkJoinPool. Caesar, Affine and Substitution map every letter on its
+ * own; Vigenere starts each segment at the key position given by the number of
+ * letters before it, Hill lets the segment a block starts in encipher the whole
+ * block, and Transposition moves every letter or digit to a position computed
+ * from its index among them. The result is identical to that of the prepared
+ * cipher run on a single thread.
+ */
+public class ParallelTextCipher {
+
+    // Default number of characters handled by one task
+    public static final int DEFAULT_SEGMENT_SIZE = 256 * 1024;
+
+    private final SegmentedCipher cipher;
+    private final ForkJoinPool pool;
+    private final int segmentSize;
+
+    public ParallelTextCipher(PreparedCipher cipher) {
+        this(cipher, ForkJoinPool.commonPool(), DEFAULT_SEGMENT_SIZE);
+    }
+
+    /**
+     * @param cipher a prepared classic cipher, see {@link #supports(PreparedCipher)}
+     * @param pool the pool the segments are processed on
+     * @param segmentSize characters per task
+     */
+    public ParallelTextCipher(PreparedCipher cipher, ForkJoinPool pool, int segmentSize) {
+        if (!supports(cipher)) {
+            throw new IllegalArgumentException(cipher.getClass().getSimpleName() + " cannot run in parallel");
+        }
+        if (segmentSize <= 0) {
+            throw new IllegalArgumentException("Segment size must be positive");
+        }
+        this.cipher = (SegmentedCipher) cipher;
+        this.pool = pool;
+        this.segmentSize = segmentSize;
+    }
+
+    /**
+     * Checks whether a prepared cipher can process a text in segments, which
+     * holds for the ciphers prepared by the classic ciphers of this package
+     */
+    public static boolean supports(PreparedCipher cipher) {
+        return cipher instanceof SegmentedCipher;
+    }
+
+    /**
+     * Encrypts a text. Texts that fit into one segment are encrypted on the calling thread.
+     *
+     * @param input The text to encrypt
+     * @return The encrypted text
+     */
+    public String encrypt(String input) {
+        return transform(input, true);
+    }
+
+    /**
+     * Decrypts a text. Texts that fit into one segment are decrypted on the calling thread.
+     *
+     * @param input The text to decrypt
+     * @return The decrypted text
+     */
+    public String decrypt(String input) {
+        return transform(input, false);
+    }
+
+    private String transform(String input, boolean encrypt) {
+        if (input.length() <= segmentSize) {
+            return encrypt ? cipher.encrypt(input) : cipher.decrypt(input);
+        }
+        return cipher.transform(input.toCharArray(), encrypt, new SegmentRunner(pool, input.length(), segmentSize));
+    }
+}
@@ -0,0 +1,51 @@
+package com.enctool.app.traditional;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.io.Writer;
+
+/**
+ * A cipher bound to a key and a language, see {@link CipherAlgorithm#prepare(String, String)}.
+ * The key has already been parsed and checked, and whatever can be derived
+ * from it is computed, so applying the same key to many texts pays that cost
+ * once. Implementations are immutable and can be shared between threads.
+ */
+public interface PreparedCipher {
+
+    /**
+     * Encrypts a text.
+     *
+     * @param input The text to encrypt
+     * @return The encrypted text
+     */
+    String encrypt(String input);
+
+    /**
+     * Decrypts a text.
+     *
+     * @param input The text to decrypt
+     * @return The decrypted text
+     */
+    String decrypt(String input);
+
+    /**
+     * Encrypts the text read from a reader and writes the result to a writer,
+     * like {@link CipherAlgorithm#encrypt(Reader, Writer, String, String)}.
+     * Neither stream is closed.
+     *
+     * @param input The text to encrypt
+     * @param output Receives the encrypted text
+     * @throws IOException if reading or writing fails
+     */
+    void encrypt(Reader input, Writer output) throws IOException;
+
+    /**
+     * Decrypts the text read from a reader and writes the result to a writer.
+     * Neither stream is closed.
+     *
+     * @param input The text to decrypt
+     * @param output Receives the decrypted text
+     * @throws IOException if reading or writing fails
+     */
+    void decrypt(Reader input, Writer output) throws IOException;
+}
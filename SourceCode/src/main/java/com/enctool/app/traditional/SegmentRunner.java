@@ -0,0 +1,96 @@
+package com.enctool.app.traditional;
+
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * Cuts a text into segments of consecutive chars and runs work on all of them
+ * on a ForkJoinPool, for {@link ParallelTextCipher}. Ciphers whose state
+ * depends on what came before, such as the Vigenere key position, first count
+ * the relevant chars of every segment; the running totals of those counts give
+ * the state each segment starts from.
+ */
+final class SegmentRunner {
+
+    /**
+     * Work on the chars {@code from} (inclusive) to {@code to} (exclusive) of segment {@code segment}
+     */
+    interface SegmentTask {
+        void run(int segment, int from, int to);
+    }
+
+    /**
+     * Counts chars of interest in a range
+     */
+    interface Counter {
+        int count(int from, int to);
+    }
+
+    private final ForkJoinPool pool;
+    private final int length;
+    private final int segmentSize;
+    private final int segments;
+
+    SegmentRunner(ForkJoinPool pool, int length, int segmentSize) {
+        this.pool = pool;
+        this.length = length;
+        this.segmentSize = segmentSize;
+        segments = (int) (((long) length + segmentSize - 1) / segmentSize);
+    }
+
+    int segments() {
+        return segments;
+    }
+
+    /**
+     * Runs a task for every segment and waits for all of them
+     */
+    void forEach(SegmentTask task) {
+        if (segments > 0) {
+            pool.invoke(new SegmentRange(task, 0, segments));
+        }
+    }
+
+    /**
+     * Counts every segment in parallel and returns the running totals: element
+     * {@code s} is the count of all segments before segment {@code s}, the last
+     * element the count of the whole text
+     */
+    int[] prefixCounts(Counter counter) {
+        int[] counts = new int[segments + 1];
+        forEach((segment, from, to) -> counts[segment + 1] = counter.count(from, to));
+        for (int s = 0; s < segments; s++) {
+            counts[s + 1] += counts[s];
+        }
+        return counts;
+    }
+
+    /**
+     * Processes a range of segments, splitting it in half until one segment is left
+     */
+    private final class SegmentRange extends RecursiveAction {
+        private static final long serialVersionUID = 1L;
+
+        private final transient SegmentTask task;
+        private final int first;
+        private final int end;
+
+        SegmentRange(SegmentTask task, int first, int end) {
+            this.task = task;
+            this.first = first;
+            this.end = end;
+        }
+
+        @Override
+        protected void compute() {
+            if (end - first > 1) {
+                int middle = (first + end) >>> 1;
+                invokeAll(new SegmentRange(task, first, middle), new SegmentRange(task, middle, end));
+                return;
+            }
+
+            int from = first * segmentSize;
+            task.run(first, from, (int) Math.min((long) from + segmentSize, length));
+        }
+    }
+}
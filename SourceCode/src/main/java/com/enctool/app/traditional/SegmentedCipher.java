@@ -0,0 +1,18 @@
+package com.enctool.app.traditional;
+
+/**
+ * Prepared cipher that can work on a text in independent segments, see
+ * {@link ParallelTextCipher}. The result must equal that of
+ * {@link PreparedCipher#encrypt(String)} or {@link PreparedCipher#decrypt(String)}.
+ */
+interface SegmentedCipher extends PreparedCipher {
+
+    /**
+     * Encrypts or decrypts a text, running the segments of the runner in parallel
+     *
+     * @param text the text, which may be modified
+     * @param encrypt true to encrypt, false to decrypt
+     * @param runner the segments of the text and the pool they run on
+     */
+    String transform(char[] text, boolean encrypt, SegmentRunner runner);
+}
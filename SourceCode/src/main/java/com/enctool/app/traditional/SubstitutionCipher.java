@@ -1,5 +1,8 @@
 package com.enctool.app.traditional;
 
+import java.io.IOException;
+import java.io.Reader;
+import java.io.Writer;
 import java.security.SecureRandom;
 
 /**
@@ -10,10 +13,6 @@ import java.security.SecureRandom;
  */
 public class SubstitutionCipher implements CipherAlgorithm {
     
-    // Define alphabets
-    private static final String ENGLISH_ALPHABET = "ABCDEFGHIJKLMNOPQRSTUVWXYZ";
-    private static final String VIETNAMESE_ALPHABET = "AĂÂBCDĐEÊGHIKLMNOÔƠPQRSTUƯVXY";
-    
     @Override
     public String encrypt(String input, String key, String language) {
         return process(input, key, language, true);
@@ -24,12 +23,22 @@ public class SubstitutionCipher implements CipherAlgorithm {
         return process(input, key, language, false);
     }
     
+    @Override
+    public void encrypt(Reader input, Writer output, String key, String language) throws IOException {
+        prepare(key, language).encrypt(input, output);
+    }
+    
+    @Override
+    public void decrypt(Reader input, Writer output, String key, String language) throws IOException {
+        prepare(key, language).decrypt(input, output);
+    }
+    
     @Override
     public String generateKey(String language) {
-        String alphabet = getAlphabet(language);
+        Alphabet alphabet = Alphabet.forLanguage(language);
         
         // Generate a random permutation of the alphabet
-        char[] shuffledAlphabet = alphabet.toCharArray();
+        char[] shuffledAlphabet = alphabet.toString().toCharArray();
         SecureRandom secureRandom = new SecureRandom();
         
         // Fisher-Yates shuffle algorithm
@@ -45,75 +54,55 @@ public class SubstitutionCipher implements CipherAlgorithm {
     
     @Override
     public String getKeyTooltip(String language) {
-        int size = language.equals("English") ? ENGLISH_ALPHABET.length() : VIETNAMESE_ALPHABET.length();
+        int size = Alphabet.forLanguage(language).size();
         return "Enter a " + size + "-letter substitution key";
     }
     
     private String process(String input, String key, String language, boolean encrypt) {
-        String alphabet = getAlphabet(language);
-        int alphabetSize = alphabet.length();
+        PreparedCipher cipher;
+        try {
+            cipher = prepare(key, language);
+        } catch (IllegalArgumentException e) {
+            return "Error: " + e.getMessage();
+        }
+        return encrypt ? cipher.encrypt(input) : cipher.decrypt(input);
+    }
+    
+    /**
+     * Builds the substitution tables of the key permutation and its inverse
+     * 
+     * @throws IllegalArgumentException if the key is not a permutation of the alphabet
+     */
+    @Override
+    public PreparedCipher prepare(String key, String language) {
+        Alphabet alphabet = Alphabet.forLanguage(language);
+        int alphabetSize = alphabet.size();
         
         if (key.length() != alphabetSize) {
-            return "Error: Substitution Cipher key must be exactly " + alphabetSize +
-                    " characters long for the " + language + " alphabet";
+            throw new IllegalArgumentException("Substitution Cipher key must be exactly " + alphabetSize +
+                    " characters long for the " + language + " alphabet");
         }
         
+        // The key is a permutation: letter i of the alphabet maps to the letter of key character i
+        int[] mapping = new int[alphabetSize];
         boolean[] used = new boolean[alphabetSize];
-        for (char c : key.toCharArray()) {
-            String upperC = String.valueOf(c).toUpperCase();
-            int index = alphabet.indexOf(upperC);
+        for (int i = 0; i < alphabetSize; i++) {
+            int index = alphabet.indexOf(key.charAt(i));
             if (index == -1) {
-                return "Error: Key contains characters not in the " + language + " alphabet";
+                throw new IllegalArgumentException("Key contains characters not in the " + language + " alphabet");
             }
             if (used[index]) {
-                return "Error: Key must contain each letter exactly once";
+                throw new IllegalArgumentException("Key must contain each letter exactly once");
             }
             used[index] = true;
+            mapping[i] = index;
         }
         
-        StringBuilder result = new StringBuilder();
-        String keyUpperCase = key.toUpperCase();
-        
-        if (encrypt) {
-            for (char c : input.toCharArray()) {
-                String upperC = String.valueOf(c).toUpperCase();
-                int index = alphabet.indexOf(upperC);
-                
-                if (index != -1) {
-                    char mappedChar = keyUpperCase.charAt(index);
-                    
-                    if (Character.isLowerCase(c)) {
-                        mappedChar = Character.toLowerCase(mappedChar);
-                    }
-                    
-                    result.append(mappedChar);
-                } else {
-                    result.append(c);
-                }
-            }
-        } else {
-            for (char c : input.toCharArray()) {
-                String upperC = String.valueOf(c).toUpperCase();
-                int index = keyUpperCase.indexOf(upperC);
-                
-                if (index != -1) {
-                    char originalChar = alphabet.charAt(index);
-                    
-                    if (Character.isLowerCase(c)) {
-                        originalChar = Character.toLowerCase(originalChar);
-                    }
-                    
-                    result.append(originalChar);
-                } else {
-                    result.append(c);
-                }
-            }
+        int[] inverse = new int[alphabetSize];
+        for (int i = 0; i < alphabetSize; i++) {
+            inverse[mapping[i]] = i;
         }
         
-        return result.toString();
-    }
-    
-    private String getAlphabet(String language) {
-        return language.equals("English") ? ENGLISH_ALPHABET : VIETNAMESE_ALPHABET;
+        return new SubstitutionTables(alphabet, mapping, inverse);
     }
 }
\ No newline at end of file
@@ -0,0 +1,53 @@
+package com.enctool.app.traditional;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.io.Writer;
+
+/**
+ * Prepared form of the ciphers that replace every letter by a fixed other
+ * letter: one substitution table per direction, built by
+ * {@link Alphabet#substitution(int[])}
+ */
+final class SubstitutionTables implements SegmentedCipher {
+
+    private final char[] encryptTable;
+    private final char[] decryptTable;
+
+    /**
+     * @param alphabet the alphabet the letter indexes refer to
+     * @param encryptMapping the ciphertext letter index of every letter index
+     * @param decryptMapping the plaintext letter index of every letter index
+     */
+    SubstitutionTables(Alphabet alphabet, int[] encryptMapping, int[] decryptMapping) {
+        encryptTable = alphabet.substitution(encryptMapping);
+        decryptTable = alphabet.substitution(decryptMapping);
+    }
+
+    @Override
+    public String encrypt(String input) {
+        return Alphabet.substitute(input, encryptTable);
+    }
+
+    @Override
+    public String decrypt(String input) {
+        return Alphabet.substitute(input, decryptTable);
+    }
+
+    @Override
+    public void encrypt(Reader input, Writer output) throws IOException {
+        TextStreams.transform(input, output, (chars, length) -> Alphabet.substitute(chars, 0, length, encryptTable));
+    }
+
+    @Override
+    public void decrypt(Reader input, Writer output) throws IOException {
+        TextStreams.transform(input, output, (chars, length) -> Alphabet.substitute(chars, 0, length, decryptTable));
+    }
+
+    @Override
+    public String transform(char[] text, boolean encrypt, SegmentRunner runner) {
+        char[] table = encrypt ? encryptTable : decryptTable;
+        runner.forEach((segment, from, to) -> Alphabet.substitute(text, from, to, table));
+        return new String(text);
+    }
+}
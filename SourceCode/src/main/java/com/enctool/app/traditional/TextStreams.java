@@ -0,0 +1,50 @@
+package com.enctool.app.traditional;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.io.Writer;
+
+/**
+ * Chunked reading and writing for the streaming variants of the ciphers
+ */
+final class TextStreams {
+
+    static final int CHUNK_SIZE = 64 * 1024;
+
+    /**
+     * Work on one chunk of text, in place
+     */
+    interface ChunkTransform {
+        void apply(char[] chars, int length);
+    }
+
+    private TextStreams() {
+    }
+
+    /**
+     * Reads the input a chunk at a time, transforms each chunk and writes it.
+     * The transform keeps whatever state it needs between two chunks.
+     */
+    static void transform(Reader input, Writer output, ChunkTransform transform) throws IOException {
+        char[] buffer = new char[CHUNK_SIZE];
+        int length;
+        while ((length = input.read(buffer)) != -1) {
+            transform.apply(buffer, length);
+            output.write(buffer, 0, length);
+        }
+        output.flush();
+    }
+
+    /**
+     * Reads the whole input, for ciphers that need all of the text at once
+     */
+    static String readAll(Reader input) throws IOException {
+        StringBuilder text = new StringBuilder();
+        char[] buffer = new char[CHUNK_SIZE];
+        int length;
+        while ((length = input.read(buffer)) != -1) {
+            text.append(buffer, 0, length);
+        }
+        return text.toString();
+    }
+}
@@ -1,9 +1,9 @@
 package com.enctool.app.traditional;
 
+import java.io.IOException;
+import java.io.Reader;
+import java.io.Writer;
 import java.security.SecureRandom;
-import java.util.ArrayList;
-import java.util.Arrays;
-import java.util.List;
 
 /**
  * Implementation of the Transposition cipher algorithm.
@@ -22,6 +22,16 @@ public class TranspositionCipher implements CipherAlgorithm {
         return process(input, key, false);
     }
     
+    @Override
+    public void encrypt(Reader input, Writer output, String key, String language) throws IOException {
+        prepare(key, language).encrypt(input, output);
+    }
+    
+    @Override
+    public void decrypt(Reader input, Writer output, String key, String language) throws IOException {
+        prepare(key, language).decrypt(input, output);
+    }
+    
     @Override
     public String generateKey(String language) {
         SecureRandom secureRandom = new SecureRandom();
@@ -35,134 +45,171 @@ public class TranspositionCipher implements CipherAlgorithm {
     }
     
     private String process(String input, String key, boolean encrypt) {
+        int numColumns;
+        try {
+            numColumns = columns(key);
+        } catch (IllegalArgumentException e) {
+            return "Error: " + e.getMessage();
+        }
+        return transform(input, numColumns, encrypt);
+    }
+    
+    /**
+     * Parses the number of columns
+     * 
+     * @throws IllegalArgumentException if the key is not a positive number
+     */
+    @Override
+    public PreparedCipher prepare(String key, String language) {
+        return new Columns(columns(key));
+    }
+    
+    private static int columns(String key) {
         if (key.isEmpty()) {
-            return "Error: Key cannot be empty for Transposition Cipher";
+            throw new IllegalArgumentException("Key cannot be empty for Transposition Cipher");
         }
         
+        int numColumns;
         try {
-            int numColumns = Integer.parseInt(key);
-            if (numColumns <= 0) {
-                return "Error: Number of columns must be positive";
-            }
-            
-            // Track positions of non-alphabetic characters
-            List<Integer> nonAlphaPositions = new ArrayList<>();
-            List<Character> nonAlphaChars = new ArrayList<>();
-            
-            // Extract only alphabetic characters for encryption/decryption
-            StringBuilder cleanInput = new StringBuilder();
-            for (int i = 0; i < input.length(); i++) {
-                char c = input.charAt(i);
-                if (Character.isLetterOrDigit(c)) {
-                    cleanInput.append(c);
-                } else {
-                    nonAlphaPositions.add(i);
-                    nonAlphaChars.add(c);
-                }
-            }
-            
-            String transformedText;
-            int inputLength = cleanInput.length();
-
-            int numRows = (int) Math.ceil((double) inputLength / numColumns);
-            if (encrypt) {
-                char[][] grid = new char[numRows][numColumns];
-                
-                // Fill grid row by row
-                for (int i = 0; i < numRows; i++) {
-                    Arrays.fill(grid[i], ' '); // Fill with spaces
-                }
-                
-                for (int i = 0; i < inputLength; i++) {
-                    int row = i / numColumns;
-                    int col = i % numColumns;
-                    grid[row][col] = cleanInput.charAt(i);
-                }
-                
-                // Read out column by column
-                StringBuilder result = new StringBuilder();
-                for (int j = 0; j < numColumns; j++) {
-                    for (int i = 0; i < numRows; i++) {
-                        if (i * numColumns + j < inputLength) {
-                            result.append(grid[i][j]);
-                        }
-                    }
-                }
-                
-                transformedText = result.toString();
-            } else {
-                // Calculate number of rows
-
-                // Calculate chars in last row (could be fewer than numColumns)
-                int lastRowChars = inputLength % numColumns;
-                if (lastRowChars == 0) lastRowChars = numColumns;
-                
-                // Initialize grid with spaces
-                char[][] grid = new char[numRows][numColumns];
-                for (int i = 0; i < numRows; i++) {
-                    Arrays.fill(grid[i], ' ');
-                }
-                
-                // Calculate number of chars in each column
-                int[] charsPerColumn = new int[numColumns];
-                for (int j = 0; j < numColumns; j++) {
-                    charsPerColumn[j] = numRows;
-                    // If this is a column that would extend beyond the last row's end
-                    if (j >= lastRowChars) {
-                        charsPerColumn[j] = numRows - 1;
+            numColumns = Integer.parseInt(key);
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("Key must be a number for this Transposition Cipher");
+        }
+        if (numColumns <= 0) {
+            throw new IllegalArgumentException("Number of columns must be positive");
+        }
+        return numColumns;
+    }
+    
+    /**
+     * The number of columns. Columns are read top to bottom, so the streaming
+     * methods need the whole text before the first character can be written.
+     */
+    private static final class Columns implements SegmentedCipher {
+        private final int numColumns;
+        
+        Columns(int numColumns) {
+            this.numColumns = numColumns;
+        }
+        
+        @Override
+        public String encrypt(String input) {
+            return TranspositionCipher.transform(input, numColumns, true);
+        }
+        
+        @Override
+        public String decrypt(String input) {
+            return TranspositionCipher.transform(input, numColumns, false);
+        }
+        
+        @Override
+        public void encrypt(Reader input, Writer output) throws IOException {
+            output.write(TranspositionCipher.transform(TextStreams.readAll(input), numColumns, true));
+            output.flush();
+        }
+        
+        @Override
+        public void decrypt(Reader input, Writer output) throws IOException {
+            output.write(TranspositionCipher.transform(TextStreams.readAll(input), numColumns, false));
+            output.flush();
+        }
+        
+        /**
+         * Collects the positions of the letters and digits of every segment,
+         * then moves each of them to its place in the other reading order
+         */
+        @Override
+        public String transform(char[] text, boolean encrypt, SegmentRunner runner) {
+            int[] cleanBefore = runner.prefixCounts((from, to) -> {
+                int count = 0;
+                for (int i = from; i < to; i++) {
+                    if (Character.isLetterOrDigit(text[i])) {
+                        count++;
                     }
                 }
-                
-                // Fill the grid column by column
-                int index = 0;
-                for (int col = 0; col < numColumns; col++) {
-                    for (int row = 0; row < charsPerColumn[col]; row++) {
-                        if (index < inputLength) {
-                            grid[row][col] = cleanInput.charAt(index++);
-                        }
+                return count;
+            });
+            int inputLength = cleanBefore[runner.segments()];
+            
+            // Other characters keep their position, letters and digits fill the remaining slots in order
+            char[] result = new char[text.length];
+            int[] slots = new int[inputLength];
+            runner.forEach((segment, from, to) -> {
+                int index = cleanBefore[segment];
+                for (int i = from; i < to; i++) {
+                    if (Character.isLetterOrDigit(text[i])) {
+                        slots[index++] = i;
+                    } else {
+                        result[i] = text[i];
                     }
                 }
-                
-                // Read out row by row
-                StringBuilder result = new StringBuilder();
-                for (int row = 0; row < numRows; row++) {
-                    for (int col = 0; col < numColumns; col++) {
-                        // Only append if it's not a padding space in the last row
-                        if (!(row == numRows - 1 && col >= lastRowChars) && grid[row][col] != ' ') {
-                            result.append(grid[row][col]);
-                        }
+            });
+            
+            runner.forEach((segment, from, to) -> {
+                for (int i = cleanBefore[segment]; i < cleanBefore[segment + 1]; i++) {
+                    int moved = columnPosition(i, numColumns, inputLength);
+                    if (encrypt) {
+                        result[slots[moved]] = text[slots[i]];
+                    } else {
+                        result[slots[i]] = text[slots[moved]];
                     }
                 }
-                
-                transformedText = result.toString();
+            });
+            return new String(result);
+        }
+    }
+    
+    /**
+     * Position in the column by column reading of the character at a position
+     * in the row by row reading of a grid with the given number of columns
+     * 
+     * @param index the position in row by row order
+     * @param length the number of characters in the grid
+     */
+    private static int columnPosition(int index, int numColumns, int length) {
+        long numRows = ((long) length + numColumns - 1) / numColumns;
+        int lastRowChars = length % numColumns;
+        int row = index / numColumns;
+        int col = index % numColumns;
+        // Columns after the last one reaching into the last row are one shorter
+        long columnStart = col * numRows;
+        if (lastRowChars != 0 && col > lastRowChars) {
+            columnStart -= col - lastRowChars;
+        }
+        return (int) (columnStart + row);
+    }
+    
+    private static String transform(String input, int numColumns, boolean encrypt) {
+        char[] chars = input.toCharArray();
+        
+        // Extract only letters and digits; other characters keep their place in chars
+        char[] cleanInput = new char[chars.length];
+        int inputLength = 0;
+        for (char c : chars) {
+            if (Character.isLetterOrDigit(c)) {
+                cleanInput[inputLength++] = c;
             }
-            
-            // Reinsert non-alphabetic characters at their original positions
-            if (!nonAlphaPositions.isEmpty()) {
-                StringBuilder finalResult = getStringBuilder(transformedText, nonAlphaPositions, nonAlphaChars);
-
-                return finalResult.toString();
+        }
+        
+        // The grid is filled row by row and read column by column
+        char[] transformedText = new char[inputLength];
+        int next = 0;
+        for (int col = 0; col < numColumns && col < inputLength; col++) {
+            for (long index = col; index < inputLength; index += numColumns) {
+                if (encrypt) {
+                    transformedText[next++] = cleanInput[(int) index];
+                } else {
+                    transformedText[(int) index] = cleanInput[next++];
+                }
             }
-            
-            return transformedText;
-            
-        } catch (NumberFormatException e) {
-            return "Error: Key must be a number for this Transposition Cipher";
         }
-    }
-
-    private static StringBuilder getStringBuilder(String transformedText, List<Integer> nonAlphaPositions, List<Character> nonAlphaChars) {
-        StringBuilder finalResult = new StringBuilder(transformedText);
-
-        for (int i = 0; i < nonAlphaPositions.size(); i++) {
-            int pos = nonAlphaPositions.get(i);
-            if (pos <= finalResult.length()) {
-                finalResult.insert(pos, nonAlphaChars.get(i));
-            } else {
-                // If position is beyond current length, append at the end
-                finalResult.append(nonAlphaChars.get(i));
+        
+        // Put the transformed letters and digits into the positions of the original ones
+        for (int i = 0, k = 0; k < inputLength; i++) {
+            if (Character.isLetterOrDigit(chars[i])) {
+                chars[i] = transformedText[k++];
             }
         }
-        return finalResult;
+        return new String(chars);
     }
 }
@@ -1,6 +1,10 @@
 package com.enctool.app.traditional;
 
+import java.io.IOException;
+import java.io.Reader;
+import java.io.Writer;
 import java.security.SecureRandom;
+import java.util.Arrays;
 
 /**
  * Implementation of the Vigenere cipher algorithm.
@@ -9,10 +13,6 @@ import java.security.SecureRandom;
  */
 public class VigenereCipher implements CipherAlgorithm {
     
-    // Define alphabets
-    private static final String ENGLISH_ALPHABET = "ABCDEFGHIJKLMNOPQRSTUVWXYZ";
-    private static final String VIETNAMESE_ALPHABET = "AĂÂBCDĐEÊGHIKLMNOÔƠPQRSTUƯVXY";
-    
     @Override
     public String encrypt(String input, String key, String language) {
         return process(input, key, language, true);
@@ -23,10 +23,20 @@ public class VigenereCipher implements CipherAlgorithm {
         return process(input, key, language, false);
     }
     
+    @Override
+    public void encrypt(Reader input, Writer output, String key, String language) throws IOException {
+        prepare(key, language).encrypt(input, output);
+    }
+    
+    @Override
+    public void decrypt(Reader input, Writer output, String key, String language) throws IOException {
+        prepare(key, language).decrypt(input, output);
+    }
+    
     @Override
     public String generateKey(String language) {
-        String alphabet = getAlphabet(language);
-        int alphabetSize = alphabet.length();
+        Alphabet alphabet = Alphabet.forLanguage(language);
+        int alphabetSize = alphabet.size();
         
         SecureRandom secureRandom = new SecureRandom();
         
@@ -46,61 +56,150 @@ public class VigenereCipher implements CipherAlgorithm {
     }
     
     private String process(String input, String key, String language, boolean encrypt) {
+        PreparedCipher cipher;
+        try {
+            cipher = prepare(key, language);
+        } catch (IllegalArgumentException e) {
+            return "Error: " + e.getMessage();
+        }
+        return encrypt ? cipher.encrypt(input) : cipher.decrypt(input);
+    }
+    
+    /**
+     * Computes the shift of every key letter
+     * 
+     * @throws IllegalArgumentException if the key has no letter of the alphabet
+     */
+    @Override
+    public PreparedCipher prepare(String key, String language) {
         if (key.isEmpty()) {
-            return "Error: Key cannot be empty for Vigenere Cipher";
+            throw new IllegalArgumentException("Key cannot be empty for Vigenere Cipher");
         }
         
-        String alphabet = getAlphabet(language);
-        StringBuilder validKey = new StringBuilder();
+        Alphabet alphabet = Alphabet.forLanguage(language);
         
-        for (char c : key.toCharArray()) {
-            String upperC = String.valueOf(c).toUpperCase();
-            if (alphabet.contains(upperC)) {
-                validKey.append(upperC);
+        // Shift of every key letter, characters of the key not in the alphabet are skipped
+        int[] shifts = new int[key.length()];
+        int keyLength = 0;
+        for (int i = 0; i < key.length(); i++) {
+            int index = alphabet.indexOf(key.charAt(i));
+            if (index != -1) {
+                shifts[keyLength++] = index;
             }
         }
         
-        if (validKey.length() == 0) {
-            return "Error: Key must contain at least one valid character for the selected alphabet";
+        if (keyLength == 0) {
+            throw new IllegalArgumentException(
+                "Key must contain at least one valid character for the selected alphabet");
         }
+        return new KeyShifts(alphabet, Arrays.copyOf(shifts, keyLength));
+    }
+    
+    /**
+     * Shifts of the key letters for both directions
+     */
+    private static final class KeyShifts implements SegmentedCipher {
+        private final Alphabet alphabet;
+        private final int[] encryptShifts;
+        private final int[] decryptShifts;
         
-        String processedKey = validKey.toString();
-        StringBuilder result = new StringBuilder();
-        int keyIndex = 0;
-        int alphabetSize = alphabet.length();
+        KeyShifts(Alphabet alphabet, int[] shifts) {
+            this.alphabet = alphabet;
+            encryptShifts = shifts;
+            decryptShifts = new int[shifts.length];
+            for (int i = 0; i < shifts.length; i++) {
+                decryptShifts[i] = alphabet.size() - shifts[i];
+            }
+        }
         
-        for (char c : input.toCharArray()) {
-            String upperC = String.valueOf(c).toUpperCase();
-            int charIndex = alphabet.indexOf(upperC);
-            
-            if (charIndex != -1) {
-                char keyChar = processedKey.charAt(keyIndex % processedKey.length());
-                int keyCharIndex = alphabet.indexOf(String.valueOf(keyChar).toUpperCase());
-                
-                int resultIndex;
-                if (encrypt) {
-                    resultIndex = (charIndex + keyCharIndex) % alphabetSize;
-                } else {
-                    resultIndex = (charIndex - keyCharIndex + alphabetSize) % alphabetSize;
-                }
-                
-                char resultChar = alphabet.charAt(resultIndex);
-                
-                if (Character.isLowerCase(c)) {
-                    resultChar = Character.toLowerCase(resultChar);
+        @Override
+        public String encrypt(String input) {
+            return apply(input, encryptShifts);
+        }
+        
+        @Override
+        public String decrypt(String input) {
+            return apply(input, decryptShifts);
+        }
+        
+        @Override
+        public void encrypt(Reader input, Writer output) throws IOException {
+            TextStreams.transform(input, output, new KeyStream(alphabet, encryptShifts, 0)::apply);
+        }
+        
+        @Override
+        public void decrypt(Reader input, Writer output) throws IOException {
+            TextStreams.transform(input, output, new KeyStream(alphabet, decryptShifts, 0)::apply);
+        }
+        
+        /**
+         * Each segment starts at the key position that follows the letters of all segments before it
+         */
+        @Override
+        public String transform(char[] text, boolean encrypt, SegmentRunner runner) {
+            int[] shifts = encrypt ? encryptShifts : decryptShifts;
+            int[] lettersBefore = runner.prefixCounts((from, to) -> {
+                int letters = 0;
+                for (int i = from; i < to; i++) {
+                    if (alphabet.contains(text[i])) {
+                        letters++;
+                    }
                 }
-                
-                result.append(resultChar);
-                keyIndex++;
-            } else {
-                result.append(c);
-            }
+                return letters;
+            });
+            runner.forEach((segment, from, to) ->
+                new KeyStream(alphabet, shifts, lettersBefore[segment] % shifts.length).apply(text, from, to));
+            return new String(text);
         }
         
-        return result.toString();
+        private String apply(String input, int[] shifts) {
+            char[] result = input.toCharArray();
+            new KeyStream(alphabet, shifts, 0).apply(result, 0, result.length);
+            return new String(result);
+        }
     }
     
-    private String getAlphabet(String language) {
-        return language.equals("English") ? ENGLISH_ALPHABET : VIETNAMESE_ALPHABET;
+    /**
+     * Position in the key, which continues from one chunk of text to the next
+     */
+    private static final class KeyStream {
+        private final Alphabet alphabet;
+        private final int[] shifts;
+        private int keyIndex;
+        
+        /**
+         * @param keyIndex the position in the key of the first letter
+         */
+        KeyStream(Alphabet alphabet, int[] shifts, int keyIndex) {
+            this.alphabet = alphabet;
+            this.shifts = shifts;
+            this.keyIndex = keyIndex;
+        }
+        
+        /**
+         * Shifts the letters among the first {@code length} chars in place
+         */
+        void apply(char[] chars, int length) {
+            apply(chars, 0, length);
+        }
+        
+        /**
+         * Shifts the letters in a range of an array in place
+         */
+        void apply(char[] chars, int from, int to) {
+            int alphabetSize = alphabet.size();
+            for (int i = from; i < to; i++) {
+                char c = chars[i];
+                int charIndex = alphabet.indexOf(c);
+                
+                if (charIndex != -1) {
+                    int resultIndex = (charIndex + shifts[keyIndex]) % alphabetSize;
+                    chars[i] = alphabet.letter(resultIndex, c);
+                    if (++keyIndex == shifts.length) {
+                        keyIndex = 0;
+                    }
+                }
+            }
+        }
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,79 @@
+package com.enctool.app.util;
+
+import org.bouncycastle.jce.provider.BouncyCastleProvider;
+
+import javax.crypto.Cipher;
+import javax.crypto.NoSuchPaddingException;
+import java.security.NoSuchAlgorithmException;
+import java.security.Security;
+
+/**
+ * Registers the Bouncy Castle provider on first use instead of at startup.
+ * Loading the provider takes longer than building the whole UI, and most
+ * operations never need it: Twofish and the text-mode RSA ciphers ask for it
+ * by name, and {@link #getCipher(String)} falls back to it for transformations
+ * the JDK lacks, such as padded CTR. It is added after the JDK providers, so
+ * everything the JDK supports keeps its hardware-accelerated implementation
+ * no matter when registration happens.
+ */
+public final class BouncyCastleSupport {
+
+    public static final String PROVIDER_NAME = BouncyCastleProvider.PROVIDER_NAME;
+
+    private static volatile boolean registered;
+
+    private BouncyCastleSupport() {
+    }
+
+    /**
+     * Registers the provider if that has not happened yet.
+     *
+     * @return the provider name, for getInstance calls that need Bouncy Castle
+     */
+    public static String register() {
+        if (!registered) {
+            synchronized (BouncyCastleSupport.class) {
+                if (Security.getProvider(PROVIDER_NAME) == null) {
+                    Security.addProvider(new BouncyCastleProvider());
+                }
+                registered = true;
+            }
+        }
+        return PROVIDER_NAME;
+    }
+
+    /**
+     * Looks up a cipher through the default provider order. If no provider supports
+     * the transformation and Bouncy Castle is not registered yet, registers it and
+     * looks again.
+     */
+    public static Cipher getCipher(String transformation) throws NoSuchAlgorithmException, NoSuchPaddingException {
+        try {
+            return Cipher.getInstance(transformation);
+        } catch (NoSuchAlgorithmException | NoSuchPaddingException e) {
+            if (registered) {
+                throw e;
+            }
+            register();
+            return Cipher.getInstance(transformation);
+        }
+    }
+
+    /**
+     * Registers the provider on a background thread, so it is usually ready
+     * before the first operation that needs it
+     */
+    public static void registerInBackground() {
+        Thread thread = new Thread(() -> {
+            try {
+                register();
+            } catch (RuntimeException e) {
+                // The first operation that needs the provider retries and reports the error
+                System.err.println("Error initializing Bouncy Castle provider: " + e.getMessage());
+            }
+        }, "bouncy-castle-init");
+        thread.setDaemon(true);
+        thread.setPriority(Thread.MIN_PRIORITY);
+        thread.start();
+    }
+}
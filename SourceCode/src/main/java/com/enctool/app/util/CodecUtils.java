@@ -0,0 +1,133 @@
+package com.enctool.app.util;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Base64;
+
+/**
+ * Table-driven hex and Base64 encoding shared by the hash, symmetric and asymmetric code.
+ * The buffer variants write into caller-supplied arrays and allocate nothing, so
+ * batch jobs can reuse one output buffer; the String variants allocate only the
+ * result.
+ */
+public final class CodecUtils {
+
+    private static final char[] HEX_DIGITS = "0123456789abcdef".toCharArray();
+
+    private static final byte[] BASE64_ALPHABET =
+        "ABCDEFGHIJKLMNOPQRSTUVWXYZabcdefghijklmnopqrstuvwxyz0123456789+/".getBytes(StandardCharsets.US_ASCII);
+
+    // Value of each hex digit character, -1 for other characters
+    private static final byte[] HEX_VALUES = new byte[128];
+
+    static {
+        Arrays.fill(HEX_VALUES, (byte) -1);
+        for (int i = 0; i < 16; i++) {
+            HEX_VALUES[HEX_DIGITS[i]] = (byte) i;
+            HEX_VALUES[Character.toUpperCase(HEX_DIGITS[i])] = (byte) i;
+        }
+    }
+
+    private CodecUtils() {
+    }
+
+    /**
+     * Encodes bytes as lowercase hex
+     */
+    public static String toHex(byte[] bytes) {
+        char[] chars = new char[bytes.length * 2];
+        toHex(bytes, 0, bytes.length, chars, 0);
+        return new String(chars);
+    }
+
+    /**
+     * Writes the lowercase hex form of a byte range into a char array.
+     *
+     * @return the number of chars written, twice the number of bytes
+     */
+    public static int toHex(byte[] bytes, int offset, int length, char[] out, int outOffset) {
+        for (int i = 0; i < length; i++) {
+            int b = bytes[offset + i] & 0xFF;
+            out[outOffset++] = HEX_DIGITS[b >>> 4];
+            out[outOffset++] = HEX_DIGITS[b & 0x0F];
+        }
+        return length * 2;
+    }
+
+    /**
+     * Decodes hex text, accepting upper and lower case digits.
+     *
+     * @throws IllegalArgumentException if the text is not valid hex
+     */
+    public static byte[] fromHex(CharSequence hex) {
+        if (hex.length() % 2 != 0) {
+            throw new IllegalArgumentException("Hex text must have an even length");
+        }
+        byte[] bytes = new byte[hex.length() / 2];
+        for (int i = 0; i < bytes.length; i++) {
+            bytes[i] = (byte) ((hexValue(hex.charAt(2 * i)) << 4) | hexValue(hex.charAt(2 * i + 1)));
+        }
+        return bytes;
+    }
+
+    /**
+     * Encodes bytes as standard Base64 with padding
+     */
+    public static String toBase64(byte[] bytes) {
+        byte[] out = new byte[base64Length(bytes.length)];
+        toBase64(bytes, 0, bytes.length, out, 0);
+        // Latin-1 lets the String use the bytes without decoding
+        return new String(out, StandardCharsets.ISO_8859_1);
+    }
+
+    /**
+     * Writes the standard Base64 form of a byte range, with padding, into a byte array.
+     *
+     * @return the number of bytes written, {@link #base64Length(int)} of the length
+     */
+    public static int toBase64(byte[] bytes, int offset, int length, byte[] out, int outOffset) {
+        int start = outOffset;
+        int end = offset + length;
+        int i = offset;
+        for (; i + 3 <= end; i += 3) {
+            int bits = (bytes[i] & 0xFF) << 16 | (bytes[i + 1] & 0xFF) << 8 | (bytes[i + 2] & 0xFF);
+            out[outOffset++] = BASE64_ALPHABET[bits >>> 18];
+            out[outOffset++] = BASE64_ALPHABET[(bits >>> 12) & 0x3F];
+            out[outOffset++] = BASE64_ALPHABET[(bits >>> 6) & 0x3F];
+            out[outOffset++] = BASE64_ALPHABET[bits & 0x3F];
+        }
+        int remaining = end - i;
+        if (remaining > 0) {
+            int bits = (bytes[i] & 0xFF) << 16 | (remaining == 2 ? (bytes[i + 1] & 0xFF) << 8 : 0);
+            out[outOffset++] = BASE64_ALPHABET[bits >>> 18];
+            out[outOffset++] = BASE64_ALPHABET[(bits >>> 12) & 0x3F];
+            out[outOffset++] = remaining == 2 ? BASE64_ALPHABET[(bits >>> 6) & 0x3F] : (byte) '=';
+            out[outOffset++] = '=';
+        }
+        return outOffset - start;
+    }
+
+    /**
+     * Length of the padded Base64 form of the given number of bytes
+     */
+    public static int base64Length(int length) {
+        return (length + 2) / 3 * 4;
+    }
+
+    /**
+     * Decodes standard Base64 text.
+     *
+     * @throws IllegalArgumentException if the text is not valid Base64
+     */
+    public static byte[] fromBase64(String text) {
+        return Base64.getDecoder().decode(text);
+    }
+
+    private static int hexValue(char c) {
+        int value = c < 128 ? HEX_VALUES[c] : -1;
+        if (value < 0) {
+            throw new IllegalArgumentException("Invalid hex digit: " + c);
+        }
+        return value;
+    }
+}
@@ -0,0 +1,106 @@
+package com.enctool.app.util;
+
+import java.io.InterruptedIOException;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Byte progress of a long-running operation, shared by the threads doing the
+ * work and the UI showing it, and the switch that cancels it.
+ * <p>
+ * Workers report every block they process with {@link #advance(long)}. Once the
+ * operation is cancelled that call throws InterruptedIOException, so the work
+ * stops between two blocks, in the middle of a file, even on pool threads that
+ * are never interrupted.
+ */
+public final class ProgressTracker {
+
+    /**
+     * Tracker for callers that do not watch progress; it cannot be cancelled
+     */
+    public static final ProgressTracker NONE = new ProgressTracker();
+
+    private final AtomicLong total = new AtomicLong();
+    private final AtomicLong done = new AtomicLong();
+    private final long startNanos = System.nanoTime();
+    private volatile boolean cancelled;
+
+    public ProgressTracker() {
+    }
+
+    /**
+     * @param total number of bytes the operation will process
+     */
+    public ProgressTracker(long total) {
+        this.total.set(total);
+    }
+
+    /**
+     * Adds to the number of bytes the operation will process, for operations
+     * that only learn their size while running
+     */
+    public void addTotal(long bytes) {
+        if (this != NONE) {
+            total.addAndGet(bytes);
+        }
+    }
+
+    /**
+     * Records processed bytes.
+     *
+     * @throws InterruptedIOException if the operation has been cancelled
+     */
+    public void advance(long bytes) throws InterruptedIOException {
+        if (this == NONE) {
+            return;
+        }
+        done.addAndGet(bytes);
+        checkCancelled();
+    }
+
+    /**
+     * @throws InterruptedIOException if the operation has been cancelled
+     */
+    public void checkCancelled() throws InterruptedIOException {
+        if (cancelled) {
+            throw new InterruptedIOException("Cancelled");
+        }
+    }
+
+    /**
+     * Asks the operation to stop at the next block
+     */
+    public void cancel() {
+        if (this == NONE) {
+            throw new UnsupportedOperationException("The shared tracker cannot be cancelled");
+        }
+        cancelled = true;
+    }
+
+    public boolean isCancelled() {
+        return cancelled;
+    }
+
+    public long getTotal() {
+        return total.get();
+    }
+
+    public long getDone() {
+        return done.get();
+    }
+
+    /**
+     * Completed fraction between 0 and 1, or 0 while the total is unknown
+     */
+    public double getFraction() {
+        long totalBytes = total.get();
+        return totalBytes <= 0 ? 0 : Math.min(1.0, (double) done.get() / totalBytes);
+    }
+
+    /**
+     * Average throughput since the tracker was created
+     */
+    public double getBytesPerSecond() {
+        long elapsed = System.nanoTime() - startNanos;
+        return elapsed <= 0 ? 0 : done.get() * 1e9 / elapsed;
+    }
+}